@@ -0,0 +1,63 @@
+/*
+ * Page-side half of CanvasBridge. BlocBridge.send(type, data, key) queues an
+ * event for the next animation frame; on(type, fn) registers a handler for
+ * events coming from Java. Frames are {seq, ack, events:[{type, data}]}.
+ */
+window.BlocBridge = {
+  port: null, queue: [], keyed: {}, handlers: {},
+  nextSeq: 1, lastReceived: 0, ackPending: false, scheduled: false,
+
+  on: function(type, fn) { this.handlers[type] = fn; },
+
+  send: function(type, data, key) {
+    var ev = { type: type, data: data };
+    if (key != null) {
+      if (this.keyed[key] != null) this.queue[this.keyed[key]] = null;
+      this.keyed[key] = this.queue.length;
+    }
+    this.queue.push(ev);
+    this.schedule();
+  },
+
+  schedule: function() {
+    if (this.scheduled) return;
+    this.scheduled = true;
+    var self = this;
+    requestAnimationFrame(function() { self.flush(); });
+  },
+
+  flush: function() {
+    this.scheduled = false;
+    if (!this.port) return;
+    var events = this.queue.filter(function(ev) { return ev != null; });
+    if (!events.length && !this.ackPending) return;
+    this.queue = []; this.keyed = {};
+    this.ackPending = false;
+    this.port.postMessage(JSON.stringify({ seq: this.nextSeq++, ack: this.lastReceived, events: events }));
+  },
+
+  receive: function(json) {
+    var frame = JSON.parse(json);
+    if (frame.seq <= this.lastReceived) return;
+    this.lastReceived = frame.seq;
+    var self = this, events = frame.events || [];
+    events.forEach(function(ev) {
+      var fn = self.handlers[ev.type];
+      if (fn) fn(ev.data);
+    });
+    // Ack-only frames are not acknowledged back
+    if (events.length) { this.ackPending = true; this.schedule(); }
+  }
+};
+
+// Java hands over its end of a fresh channel after every connect()
+window.addEventListener('message', function(e) {
+  if (e.data !== 'bloc-bridge-init' || !e.ports.length) return;
+  BlocBridge.port = e.ports[0];
+  BlocBridge.port.onmessage = function(m) { BlocBridge.receive(m.data); };
+  BlocBridge.nextSeq = 1;
+  BlocBridge.lastReceived = 0;
+  BlocBridge.queue = []; BlocBridge.keyed = {};
+  if (BlocBridge.onconnect) BlocBridge.onconnect();
+  BlocBridge.schedule();
+});
@@ -0,0 +1,181 @@
+/*
+ * Editor canvas runtime, loaded once per WebView from canvas.html.
+ * Elements are addressed by data-bloc-id so user edits to the id attribute
+ * do not break lookups. One delegated listener on the document handles
+ * selection for every element, present or inserted later, so rendering
+ * never has to wire per-element handlers.
+ *
+ * The page never draws selection itself: after every layout change it
+ * reports element bounding boxes (document CSS pixels) and the editor draws
+ * the selection and hover outlines in a native overlay.
+ *
+ * Element styles arrive as generated classes whose rules live in
+ * #bloc-classes; rules are only ever added until the next full render.
+ *
+ * Bump VERSION together with EditorActivity.CANVAS_RUNTIME_VERSION.
+ */
+window.BlocCanvas = {
+  VERSION: 4,
+  measureScheduled: false,
+  rules: {},  // Generated class names already in #bloc-classes
+
+  find: function(id, created) {
+    if (!id) return null;
+    if (created && created[id]) return created[id];
+    return document.querySelector('[data-bloc-id="' + CSS.escape(id) + '"]');
+  },
+
+  /** Replace the whole document body, project stylesheet and generated classes */
+  render: function(html, css, rules) {
+    var text = '';
+    this.rules = {};
+    Object.keys(rules || {}).forEach(function(name) {
+      this.rules[name] = true;
+      text += '.' + name + ' { ' + rules[name] + ' }\n';
+    }, this);
+    document.getElementById('bloc-css').textContent = css || '';
+    document.getElementById('bloc-classes').textContent = text;
+    document.body.innerHTML = html || '';
+    this.scheduleMeasure();
+  },
+
+  /** Add generated class rules the page does not have yet */
+  addRules: function(rules) {
+    var sheet = document.getElementById('bloc-classes').sheet;
+    Object.keys(rules || {}).forEach(function(name) {
+      if (this.rules[name]) return;
+      this.rules[name] = true;
+      try {
+        sheet.insertRule('.' + name + ' { ' + rules[name] + ' }', sheet.cssRules.length);
+      } catch (e) {
+        // A rule the CSS parser rejects styles nothing, same as an invalid inline style
+      }
+    }, this);
+  },
+
+  /** Report element geometry once the current frame's changes are laid out */
+  scheduleMeasure: function() {
+    if (this.measureScheduled) return;
+    this.measureScheduled = true;
+    var self = this;
+    requestAnimationFrame(function() {
+      self.measureScheduled = false;
+      self.measure();
+    });
+  },
+
+  /**
+   * Send every element's box as {ids, rects:[x, y, w, h, ...], width, height}
+   * in document coordinates, so scrolling needs no new report
+   */
+  measure: function() {
+    var nodes = document.querySelectorAll('[data-bloc-id]');
+    var sx = window.scrollX, sy = window.scrollY, ids = [], rects = [];
+    for (var i = 0; i < nodes.length; i++) {
+      var r = nodes[i].getBoundingClientRect();
+      ids.push(nodes[i].getAttribute('data-bloc-id'));
+      rects.push(Math.round(r.left + sx), Math.round(r.top + sy), Math.round(r.width), Math.round(r.height));
+    }
+    var root = document.documentElement;
+    BlocBridge.send('layout', { ids: ids, rects: rects, width: root.scrollWidth, height: root.scrollHeight }, 'layout');
+  },
+
+  place: function(node, parentId, afterId, created) {
+    var parent = parentId ? this.find(parentId, created) : document.body;
+    if (!parent) return false;
+    var after = afterId ? this.find(afterId, created) : null;
+    if (afterId && !after) return false;
+    parent.insertBefore(node, after ? after.nextSibling : parent.firstElementChild);
+    return true;
+  },
+
+  /**
+   * Apply one CanvasPatch batch. Removal targets are resolved before any
+   * other operation runs and detached last.
+   * @return false if the page no longer matches what Java expects
+   */
+  apply: function(ops) {
+    var ok = true, created = {}, self = this;
+    var doomed = ops.filter(function(op) { return op.op === 'remove'; })
+                    .map(function(op) { return self.find(op.id); });
+    ops.forEach(function(op) {
+      if (op.op === 'remove') return;
+      if (op.op === 'set-css') {
+        document.getElementById('bloc-css').textContent = op.value;
+        return;
+      }
+      if (op.op === 'add-rules') {
+        self.addRules(op.rules);
+        return;
+      }
+      if (op.op === 'insert') {
+        var tpl = document.createElement('template');
+        tpl.innerHTML = op.html;
+        var node = tpl.content.firstElementChild;
+        created[op.id] = node;
+        ok = self.place(node, op.parentId, op.afterId, created) && ok;
+        return;
+      }
+      var el = self.find(op.id, created);
+      if (!el) { ok = false; return; }
+      if (op.op === 'move') {
+        ok = self.place(el, op.parentId, op.afterId, created) && ok;
+      } else if (op.op === 'set-attr') {
+        if (op.value == null) el.removeAttribute(op.name); else el.setAttribute(op.name, op.value);
+      } else if (op.op === 'set-style') {
+        if (op.value == null) el.style.removeProperty(op.name); else el.style.setProperty(op.name, op.value);
+      } else if (op.op === 'set-props') {
+        if (op.rules) self.addRules(op.rules);
+        Object.keys(op.attributes || {}).forEach(function(k) { el.setAttribute(k, op.attributes[k]); });
+        Object.keys(op.styles || {}).forEach(function(k) {
+          if (op.styles[k] === '') el.style.removeProperty(k); else el.style.setProperty(k, op.styles[k]);
+        });
+      } else if (op.op === 'set-text') {
+        var t = el.firstChild;
+        if (t && t.nodeType === 3) { if (t.nodeValue !== op.value) t.nodeValue = op.value; }
+        else if (op.value) el.insertBefore(document.createTextNode(op.value), t);
+      }
+    });
+    doomed.forEach(function(el) { if (el) el.remove(); else ok = false; });
+    this.scheduleMeasure();
+    return ok;
+  }
+};
+
+// Single delegated listener: a tap anywhere selects the nearest element
+document.addEventListener('click', function(e) {
+  var el = e.target.closest ? e.target.closest('[data-bloc-id]') : null;
+  if (!el) return;
+  e.preventDefault();  // Links and buttons must not act inside the editor
+  e.stopPropagation();
+  BlocBridge.send('select', { id: el.getAttribute('data-bloc-id') }, 'select');
+}, true);
+
+// Mouse and stylus pointers outline the element under them; the editor draws it natively
+var hoveredId = null;
+function sendHover(id) {
+  if (id === hoveredId) return;
+  hoveredId = id;
+  BlocBridge.send('hover', { id: id }, 'hover');
+}
+document.addEventListener('pointerover', function(e) {
+  if (e.pointerType === 'touch') return;  // A tap selects; it should not leave a hover behind
+  var el = e.target.closest ? e.target.closest('[data-bloc-id]') : null;
+  sendHover(el ? el.getAttribute('data-bloc-id') : null);
+}, true);
+document.documentElement.addEventListener('pointerleave', function() { sendHover(null); });
+
+BlocBridge.onconnect = function() {
+  BlocBridge.send('ready', { version: BlocCanvas.VERSION });
+};
+// Viewport changes and late-loading images move boxes without any patch
+window.addEventListener('resize', function() { BlocCanvas.scheduleMeasure(); });
+document.addEventListener('load', function() { BlocCanvas.scheduleMeasure(); }, true);
+
+BlocBridge.on('render', function(doc) {
+  BlocCanvas.render(doc.html, doc.css, doc.rules);
+  BlocBridge.send('rendered', {});
+});
+BlocBridge.on('patch', function(batch) {
+  if (!BlocCanvas.apply(batch.ops)) BlocBridge.send('patch-failed', {});
+});
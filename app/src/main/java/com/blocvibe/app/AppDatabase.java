@@ -1,18 +1,31 @@
 package com.blocvibe.app;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.util.Log;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import java.io.IOException;
+import java.util.List;
 
-@Database(entities = {Project.class}, version = 2, exportSchema = false)
+@Database(entities = {Project.class, ElementRecord.class, EditOp.class, LegacyElements.class}, version = 7,
+          exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
     private static AppDatabase instance;
     
     public abstract ProjectDao projectDao();
     
+    public abstract ElementDao elementDao();
+    
+    // Same definition Room derives from LegacyElements
+    private static final String CREATE_LEGACY_ELEMENTS = "CREATE TABLE IF NOT EXISTS `legacy_elements` (" +
+        "`project_id` INTEGER NOT NULL, `elements_json` TEXT, PRIMARY KEY(`project_id`), " +
+        "FOREIGN KEY(`project_id`) REFERENCES `projects`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE)";
+    
     // Migration from version 1 to 2
     static final Migration MIGRATION_1_2 = new Migration(1, 2) {
         @Override
@@ -26,6 +39,155 @@ public abstract class AppDatabase extends RoomDatabase {
         }
     };
     
+    // Migration from version 2 to 3
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // Summary columns for the project list, filled in from existing content
+            database.execSQL("ALTER TABLE projects ADD COLUMN element_count INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE projects ADD COLUMN byte_size INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("UPDATE projects SET " +
+                "element_count = (length(ifnull(elements_json, '')) - " +
+                "length(replace(ifnull(elements_json, ''), '\"elementId\"', ''))) / 11, " +
+                "byte_size = length(CAST(ifnull(elements_json, '') AS BLOB)) + " +
+                "length(CAST(ifnull(css_content, '') AS BLOB)) + " +
+                "length(CAST(ifnull(js_content, '') AS BLOB))");
+            
+            // List ordering and paging
+            database.execSQL("CREATE INDEX IF NOT EXISTS index_projects_last_modified ON projects(last_modified)");
+        }
+    };
+    
+    // Migration from version 3 to 4
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // Write counter used to tell self-originated saves from external changes
+            database.execSQL("ALTER TABLE projects ADD COLUMN revision INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+    
+    // Migration from version 4 to 5
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // Rebuild projects without the legacy html_content and elements_json columns
+            database.execSQL("DROP INDEX IF EXISTS index_projects_last_modified");
+            database.execSQL("ALTER TABLE projects RENAME TO projects_old");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `projects` (" +
+                "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `project_name` TEXT, " +
+                "`css_content` TEXT, `js_content` TEXT, `last_modified` INTEGER NOT NULL, " +
+                "`element_count` INTEGER NOT NULL DEFAULT 0, `byte_size` INTEGER NOT NULL DEFAULT 0, " +
+                "`revision` INTEGER NOT NULL DEFAULT 0)");
+            database.execSQL("INSERT INTO projects (id, project_name, css_content, js_content, " +
+                "last_modified, element_count, byte_size, revision) " +
+                "SELECT id, project_name, css_content, js_content, last_modified, element_count, " +
+                "byte_size, revision FROM projects_old");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_projects_last_modified` ON `projects` (`last_modified`)");
+            
+            // One row per element
+            database.execSQL("CREATE TABLE IF NOT EXISTS `elements` (" +
+                "`project_id` INTEGER NOT NULL, `element_id` TEXT NOT NULL, `parent_id` TEXT, " +
+                "`position` INTEGER NOT NULL, `tag` TEXT, `text` TEXT, `styles` TEXT, `attributes` TEXT, " +
+                "PRIMARY KEY(`project_id`, `element_id`), " +
+                "FOREIGN KEY(`project_id`) REFERENCES `projects`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_elements_project_id_parent_id_position` " +
+                "ON `elements` (`project_id`, `parent_id`, `position`)");
+            
+            // Pages that cannot be split are kept verbatim rather than dropped
+            database.execSQL(CREATE_LEGACY_ELEMENTS);
+            
+            splitElementsJson(database);
+            database.execSQL("DROP TABLE projects_old");
+        }
+    };
+    
+    // Migration from version 5 to 6
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // Append-only edit journal, folded into the element rows at checkpoints
+            database.execSQL("CREATE TABLE IF NOT EXISTS `edit_journal` (" +
+                "`seq` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `project_id` INTEGER NOT NULL, " +
+                "`type` TEXT, `element_id` TEXT, `parent_id` TEXT, `position` INTEGER NOT NULL, " +
+                "`name` TEXT, `value` TEXT, " +
+                "FOREIGN KEY(`project_id`) REFERENCES `projects`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_edit_journal_project_id` ON `edit_journal` (`project_id`)");
+        }
+    };
+    
+    // Migration from version 6 to 7
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // Already created by MIGRATION_4_5 on databases that came through it
+            database.execSQL(CREATE_LEGACY_ELEMENTS);
+        }
+    };
+    
+    /**
+     * Parse every project's elements_json and write it out as element rows.
+     * A project whose JSON cannot be parsed keeps it in legacy_elements.
+     */
+    private static void splitElementsJson(SupportSQLiteDatabase database) {
+        BlocElementTypeAdapter codec = new BlocElementTypeAdapter();
+        SupportSQLiteStatement insert = database.compileStatement(
+            "INSERT OR REPLACE INTO elements (project_id, element_id, parent_id, position, tag, text, " +
+            "styles, attributes) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+        SupportSQLiteStatement stats = database.compileStatement(
+            "UPDATE projects SET element_count = ?, byte_size = ? WHERE id = ?");
+        SupportSQLiteStatement legacy = database.compileStatement(
+            "INSERT OR REPLACE INTO legacy_elements (project_id, elements_json) VALUES (?, ?)");
+        
+        try (Cursor cursor = database.query(
+                "SELECT id, elements_json, css_content, js_content FROM projects_old")) {
+            while (cursor.moveToNext()) {
+                long projectId = cursor.getLong(0);
+                List<ElementRecord> records;
+                try {
+                    records = ElementRecord.flatten(projectId, codec.parseTree(cursor.getString(1)), codec);
+                } catch (IOException | RuntimeException e) {
+                    Log.w("AppDatabase", "Unreadable elements_json in project " + projectId + ", kept as is", e);
+                    legacy.clearBindings();
+                    legacy.bindLong(1, projectId);
+                    bindNullable(legacy, 2, cursor.getString(1));
+                    legacy.executeInsert();
+                    continue;
+                }
+                
+                long elementBytes = 0;
+                for (ElementRecord record : records) {
+                    insert.clearBindings();
+                    insert.bindLong(1, record.projectId);
+                    insert.bindString(2, record.elementId);
+                    bindNullable(insert, 3, record.parentId);
+                    insert.bindLong(4, record.position);
+                    bindNullable(insert, 5, record.tag);
+                    bindNullable(insert, 6, record.text);
+                    bindNullable(insert, 7, record.styles);
+                    bindNullable(insert, 8, record.attributes);
+                    insert.executeInsert();
+                    elementBytes += record.byteSize();
+                }
+                
+                stats.clearBindings();
+                stats.bindLong(1, records.size());
+                stats.bindLong(2, elementBytes + Project.utf8Length(cursor.getString(2))
+                    + Project.utf8Length(cursor.getString(3)));
+                stats.bindLong(3, projectId);
+                stats.executeUpdateDelete();
+            }
+        }
+    }
+    
+    private static void bindNullable(SupportSQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+    
     public static synchronized AppDatabase getInstance(Context context) {
         if (instance == null) {
             instance = Room.databaseBuilder(
@@ -33,7 +195,8 @@ public abstract class AppDatabase extends RoomDatabase {
                 AppDatabase.class,
                 "blocvibe_database"
             )
-            .addMigrations(MIGRATION_1_2)
+            .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6,
+                           MIGRATION_6_7)
             .fallbackToDestructiveMigration()  // For development, recreate DB if migration fails
             .build();
         }
@@ -0,0 +1,311 @@
+package com.blocvibe.app;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * AutoSaver - Write-behind saving for the open project.
+ * Element edits are recorded as EditOps and appended to the journal in small
+ * batches, so each keystroke costs one journal row. Once the journal passes a
+ * threshold (or on flush) a checkpoint compares the element rows with the
+ * last saved ones, writes only the rows that differ and truncates the journal.
+ * Changes outside the element tree only mark the project dirty and are saved
+ * after a quiet period, or after a maximum delay during continuous editing.
+ * All public methods must be called on the main thread.
+ */
+public class AutoSaver {
+
+    private static final String TAG = "AutoSaver";
+
+    /**
+     * Captures the current project content. snapshot() is called on the main
+     * thread and should only freeze state; the returned job runs on the save
+     * executor, where the expensive serialization happens.
+     */
+    public interface ContentSource {
+        Callable<Snapshot> snapshot();
+    }
+
+    /**
+     * Project row plus its complete set of element rows
+     */
+    public static class Snapshot {
+        public final Project project;
+        public final List<ElementRecord> elements;
+
+        public Snapshot(Project project, List<ElementRecord> elements) {
+            this.project = project;
+            this.elements = elements;
+        }
+    }
+
+    /**
+     * Notified on the main thread once a requested flush has completed
+     */
+    public interface OnSavedListener {
+        void onSaved(boolean written);
+    }
+
+    public static final long DEFAULT_QUIET_MS = 1500;
+    public static final long DEFAULT_MAX_DELAY_MS = 10000;
+    public static final int DEFAULT_CHECKPOINT_OPS = 200;
+
+    private final ElementDao dao;
+    private final ExecutorService executor;  // Single-threaded, so writes stay ordered
+    private final ContentSource source;
+    private final long quietMs;
+    private final long maxDelayMs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable saveRunnable = () -> flush(null);
+    private final Runnable appendRunnable = this::appendJournal;
+    private final List<EditOp> pendingOps = new ArrayList<>();  // Recorded, not yet handed to the executor
+    private final BlocElementTypeAdapter journalCodec = new BlocElementTypeAdapter();  // Executor only
+    private int checkpointOps = DEFAULT_CHECKPOINT_OPS;
+
+    private boolean dirty;
+    private long firstDirtyAt;    // Uptime of the oldest unsaved edit
+    private long lastSavedHash;   // Project fields; only touched on the executor thread
+    private Map<String, ElementRecord> savedElements = new HashMap<>();  // Executor thread only
+    private int journalLength;    // Ops recorded since the last checkpoint
+    private int storedJournal;    // Journal rows in the database; executor thread only
+    private volatile long revision;  // Revision of the last row this saver loaded or wrote
+
+    public AutoSaver(ElementDao dao, ExecutorService executor, ContentSource source) {
+        this(dao, executor, source, DEFAULT_QUIET_MS, DEFAULT_MAX_DELAY_MS);
+    }
+
+    public AutoSaver(ElementDao dao, ExecutorService executor, ContentSource source,
+                     long quietMs, long maxDelayMs) {
+        this.dao = dao;
+        this.executor = executor;
+        this.source = source;
+        this.quietMs = quietMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * Record the content that is already stored so unchanged rows are not rewritten
+     * @param storedJournal journal rows still on top of storedElements (replayed on load)
+     */
+    public void setBaseline(Project stored, List<ElementRecord> storedElements, int storedJournal) {
+        long hash = contentHash(stored);
+        long storedRevision = stored.revision;
+        journalLength = storedJournal;
+        executor.execute(() -> {
+            lastSavedHash = hash;
+            revision = storedRevision;
+            savedElements = index(storedElements);
+            this.storedJournal = storedJournal;
+        });
+    }
+
+    /**
+     * Number of journaled edits after which a checkpoint is written
+     */
+    public void setCheckpointThreshold(int ops) {
+        checkpointOps = Math.max(1, ops);
+    }
+
+    /**
+     * Revision of the newest row written by this saver (set before the write
+     * commits, so observers can recognize their own saves)
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Note an edit and (re)schedule the coalesced save
+     */
+    public void markDirty() {
+        long now = SystemClock.uptimeMillis();
+        if (!dirty) {
+            dirty = true;
+            firstDirtyAt = now;
+        }
+        long deadline = Math.min(now + quietMs, firstDirtyAt + maxDelayMs);
+        handler.removeCallbacks(saveRunnable);
+        handler.postAtTime(saveRunnable, deadline);
+    }
+
+    /**
+     * Journal an element edit that has already been applied to the tree. Edits
+     * recorded in the same main-loop pass are appended in one batch; journaled
+     * edits do not start the save timer because they are already durable.
+     */
+    public void record(EditOp op) {
+        if (executor.isShutdown()) return;
+        dirty = true;
+        if (pendingOps.isEmpty()) {
+            handler.post(appendRunnable);
+        }
+        pendingOps.add(op);
+        if (++journalLength >= checkpointOps) {
+            flush(null);
+        }
+    }
+
+    /**
+     * Save immediately if there are pending edits
+     */
+    public void flush() {
+        flush(null);
+    }
+
+    /**
+     * Save now regardless of the dirty flag and report completion to the listener
+     */
+    public void saveNow(OnSavedListener listener) {
+        dirty = true;
+        flush(listener);
+    }
+
+    /**
+     * Flush pending edits, then stop accepting work. Writes already queued on the
+     * executor still complete; nothing is dropped.
+     */
+    public void close() {
+        flush(null);
+        executor.shutdown();
+    }
+
+    private void appendJournal() {
+        handler.removeCallbacks(appendRunnable);
+        if (pendingOps.isEmpty() || executor.isShutdown()) return;
+        List<EditOp> batch = new ArrayList<>(pendingOps);
+        pendingOps.clear();
+        executor.execute(() -> {
+            for (EditOp op : batch) {
+                op.encode(journalCodec);
+            }
+            dao.appendJournal(batch);
+            storedJournal += batch.size();
+        });
+    }
+
+    private void flush(OnSavedListener listener) {
+        handler.removeCallbacks(saveRunnable);
+        appendJournal();  // Queued ahead of the checkpoint, which then covers it
+        if (!dirty || executor.isShutdown()) return;
+        dirty = false;
+        journalLength = 0;
+
+        Callable<Snapshot> job = source.snapshot();
+        if (job == null) return;
+
+        executor.execute(() -> {
+            Snapshot content;
+            try {
+                content = job.call();
+            } catch (Exception e) {
+                Log.e(TAG, "Could not serialize project", e);
+                content = null;
+            }
+            if (content == null) {
+                if (listener != null) {
+                    handler.post(() -> listener.onSaved(false));
+                }
+                return;
+            }
+
+            Project project = content.project;
+            long hash = contentHash(project);
+            Map<String, ElementRecord> current = index(content.elements);
+            List<ElementRecord> changed = new ArrayList<>();
+            long elementBytes = 0;
+            for (ElementRecord record : content.elements) {
+                ElementRecord saved = savedElements.get(record.elementId);
+                if (saved == null || !saved.sameContent(record)) {
+                    changed.add(record);
+                }
+                elementBytes += record.byteSize();
+            }
+            List<String> removed = new ArrayList<>();
+            for (String id : savedElements.keySet()) {
+                if (!current.containsKey(id)) {
+                    removed.add(id);
+                }
+            }
+
+            boolean written = hash != lastSavedHash || !changed.isEmpty() || !removed.isEmpty();
+            if (written) {
+                project.lastModified = System.currentTimeMillis();
+                project.updateStats(content.elements.size(), elementBytes);
+                project.revision = revision + 1;
+                revision = project.revision;
+                dao.saveChanges(project, changed, removed);
+                lastSavedHash = hash;
+                savedElements = current;
+                Log.d(TAG, "Checkpoint: " + changed.size() + " changed and " + removed.size()
+                    + " removed of " + content.elements.size() + " elements, "
+                    + storedJournal + " journal rows folded");
+            } else if (storedJournal > 0) {
+                dao.clearJournal(project.id);  // Edits cancelled out; the rows are already current
+            }
+            storedJournal = 0;
+            if (listener != null) {
+                handler.post(() -> listener.onSaved(written));
+            }
+        });
+    }
+
+    /**
+     * Copy of the persisted fields of a project, safe to hand to a background thread
+     */
+    public static Project copyOf(Project project) {
+        Project copy = new Project();
+        copy.id = project.id;
+        copy.name = project.name;
+        copy.cssContent = project.cssContent;
+        copy.jsContent = project.jsContent;
+        copy.lastModified = project.lastModified;
+        copy.elementCount = project.elementCount;
+        copy.byteSize = project.byteSize;
+        copy.revision = project.revision;
+        return copy;
+    }
+
+    private static Map<String, ElementRecord> index(List<ElementRecord> records) {
+        Map<String, ElementRecord> byId = new HashMap<>(records.size() * 2);
+        for (ElementRecord record : records) {
+            byId.put(record.elementId, record);
+        }
+        return byId;
+    }
+
+    /**
+     * 64-bit FNV-1a hash over the project row's own content (elements are diffed row by row)
+     */
+    static long contentHash(Project project) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, project.name);
+        hash = hash(hash, project.cssContent);
+        hash = hash(hash, project.jsContent);
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value != null) {
+            for (int i = 0, n = value.length(); i < n; i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+        }
+        // Field separator so ("ab", "c") and ("a", "bc") differ
+        hash ^= 0xff;
+        hash *= 0x100000001b3L;
+        return hash;
+    }
+}
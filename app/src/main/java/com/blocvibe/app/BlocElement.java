@@ -1,7 +1,7 @@
 package com.blocvibe.app;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -17,7 +17,7 @@ public class BlocElement {
     public String tag;          // HTML tag (e.g., "div", "button", "p", "h1")
     public String textContent;  // Inner text content, if any
     
-    // CSS & Attributes
+    // CSS & Attributes: SharedProperties (hash-consed, copy on write) on live elements
     public Map<String, String> styles;      // Inline styles (e.g., {"color": "red", "padding": "10px"})
     public Map<String, String> attributes;  // HTML attributes (e.g., {"class": "btn", "id": "myButton"})
     
@@ -27,6 +27,12 @@ public class BlocElement {
     
     // State
     public boolean isSelected;  // Whether this element is currently selected in the editor
+
+    // Change tracking: version grows whenever this element or anything below it changes
+    int version;
+    transient BlocElement parent;  // Live parent for markDirty(); null at top level and in snapshots
+    transient BlocElement source;  // Snapshots: the live element copied, at the same version
+    private transient BlocElement frozen;  // Last snapshot(), reused while version is unchanged
     
     /**
      * Default constructor - creates an empty element
@@ -35,11 +41,12 @@ public class BlocElement {
         this.elementId = UUID.randomUUID().toString();
         this.tag = "div";
         this.textContent = "";
-        this.styles = new HashMap<>();
-        this.attributes = new HashMap<>();
+        this.styles = new SharedProperties();
+        this.attributes = new SharedProperties();
         this.children = new ArrayList<>();
         this.parentId = null;
         this.isSelected = false;
+        own();
     }
     
     /**
@@ -49,11 +56,12 @@ public class BlocElement {
         this.elementId = "bloc-" + UUID.randomUUID().toString().substring(0, 8);
         this.tag = tag;
         this.textContent = "";
-        this.styles = new HashMap<>();
-        this.attributes = new HashMap<>();
+        this.styles = new SharedProperties();
+        this.attributes = new SharedProperties();
         this.children = new ArrayList<>();
         this.parentId = null;
         this.isSelected = false;
+        own();
         
         // Set default ID attribute
         this.attributes.put("id", this.elementId);
@@ -67,13 +75,52 @@ public class BlocElement {
         this.textContent = textContent;
     }
     
+    /**
+     * Constructor for deserialization - adopts the given fields without copying
+     * and only generates an ID when none was stored
+     */
+    BlocElement(String elementId, String tag, String textContent, Map<String, String> styles,
+                Map<String, String> attributes, List<BlocElement> children) {
+        this.elementId = elementId != null ? elementId : "bloc-" + UUID.randomUUID().toString().substring(0, 8);
+        this.tag = tag;
+        this.textContent = textContent;
+        this.styles = styles;
+        this.attributes = attributes;
+        this.children = children;
+        this.parentId = null;
+        this.isSelected = false;
+        own();
+        for (BlocElement child : children) {
+            child.parent = this;
+        }
+    }
+
+    private void own() {
+        if (styles instanceof SharedProperties) ((SharedProperties) styles).owner = this;
+        if (attributes instanceof SharedProperties) ((SharedProperties) attributes).owner = this;
+    }
+
+    /**
+     * Record a change to this element. Bumps its version and every
+     * ancestor's, so clean subtrees keep their cached snapshot and markup.
+     * Style/attribute map writes and tree edits through BlocElement or
+     * ElementIndex call this; code assigning fields directly must too.
+     */
+    public void markDirty() {
+        for (BlocElement el = this; el != null; el = el.parent) {
+            el.version++;
+        }
+    }
+
     /**
      * Add a child element
      */
     public void addChild(BlocElement child) {
         if (child != null) {
             child.parentId = this.elementId;
+            child.parent = this;
             this.children.add(child);
+            markDirty();
         }
     }
     
@@ -84,9 +131,19 @@ public class BlocElement {
         if (child != null) {
             this.children.remove(child);
             child.parentId = null;
+            child.parent = null;
+            markDirty();
         }
     }
     
+    /**
+     * Replace the text content
+     */
+    public void setText(String text) {
+        this.textContent = text;
+        markDirty();
+    }
+
     /**
      * Add or update a style property
      */
@@ -105,43 +162,7 @@ public class BlocElement {
      * Generate HTML string from this element and its children
      */
     public String toHtml() {
-        StringBuilder html = new StringBuilder();
-        
-        // Opening tag
-        html.append("<").append(tag);
-        
-        // Add attributes
-        if (!attributes.isEmpty()) {
-            for (Map.Entry<String, String> attr : attributes.entrySet()) {
-                html.append(" ").append(attr.getKey()).append("=\"").append(attr.getValue()).append("\"");
-            }
-        }
-        
-        // Add inline styles
-        if (!styles.isEmpty()) {
-            html.append(" style=\"");
-            for (Map.Entry<String, String> style : styles.entrySet()) {
-                html.append(style.getKey()).append(": ").append(style.getValue()).append("; ");
-            }
-            html.append("\"");
-        }
-        
-        html.append(">");
-        
-        // Add text content
-        if (textContent != null && !textContent.isEmpty()) {
-            html.append(textContent);
-        }
-        
-        // Add children recursively
-        for (BlocElement child : children) {
-            html.append(child.toHtml());
-        }
-        
-        // Closing tag
-        html.append("</").append(tag).append(">");
-        
-        return html.toString();
+        return HtmlSerializer.forExport().render(this);
     }
     
     /**
@@ -177,6 +198,41 @@ public class BlocElement {
         return cloned;
     }
     
+    /**
+     * Read-only deep copy that keeps element IDs, for handing the current
+     * state to a background thread while editing continues. Styles and
+     * attributes are the shared immutable maps, so they are not copied.
+     * Subtrees unchanged since the last call return the same copy, so a
+     * snapshot after one edit costs O(depth + changed subtree).
+     */
+    public BlocElement snapshot() {
+        if (frozen != null && frozen.version == version) {
+            return frozen;
+        }
+        List<BlocElement> copiedChildren = snapshotTree(this.children);
+        BlocElement copy = new BlocElement(this.elementId, this.tag, this.textContent,
+            PropertyMap.of(this.styles), PropertyMap.of(this.attributes), copiedChildren);
+        copy.parentId = this.parentId;
+        copy.version = this.version;
+        copy.source = source != null ? source : this;
+        for (BlocElement child : copiedChildren) {
+            child.parent = null;  // Copies are shared between snapshots
+        }
+        frozen = copy;
+        return copy;
+    }
+
+    /**
+     * Read-only deep copy of a list of root elements
+     */
+    public static List<BlocElement> snapshotTree(List<BlocElement> elements) {
+        List<BlocElement> copy = new ArrayList<>(elements.size());
+        for (BlocElement element : elements) {
+            copy.add(element.snapshot());
+        }
+        return Collections.unmodifiableList(copy);
+    }
+
     /**
      * Get a list of all elements in the tree (for selection/editing)
      */
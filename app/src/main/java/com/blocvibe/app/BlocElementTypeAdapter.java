@@ -0,0 +1,464 @@
+package com.blocvibe.app;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * BlocElementTypeAdapter - Hand-written streaming JSON codec for element trees.
+ * Reads and writes through JsonReader/JsonWriter without reflection, omits
+ * editor-only state (isSelected, parentId) and empty fields, and interns tag
+ * names and style/attribute keys so repeated strings share one instance.
+ * Style and attribute maps are read as hash-consed SharedProperties. When a
+ * whole tree is written, maps used by more than one element are written once
+ * in a "blocks" table and referenced by index.
+ * Input written by the old reflective Gson path is still accepted.
+ * Instances hold an intern pool and are not thread-safe.
+ */
+public class BlocElementTypeAdapter extends TypeAdapter<BlocElement> {
+
+    private static final String ELEMENT_ID = "elementId";
+    private static final String TAG = "tag";
+    private static final String TEXT = "textContent";
+    private static final String STYLES = "styles";
+    private static final String ATTRIBUTES = "attributes";
+    private static final String CHILDREN = "children";
+    private static final String STYLES_REF = "stylesRef";
+    private static final String ATTRIBUTES_REF = "attributesRef";
+    private static final String BLOCKS = "blocks";
+    private static final String ELEMENTS = "elements";
+
+    private final Map<String, String> pool = new HashMap<>();
+    private List<PropertyMap> blocks;  // Shared maps of the list being read, by index
+
+    @Override
+    public void write(JsonWriter out, BlocElement el) throws IOException {
+        write(out, el, null);
+    }
+
+    /**
+     * @param refs index of each shared map in the blocks table, or null to write maps inline
+     */
+    private void write(JsonWriter out, BlocElement el, Map<PropertyMap, Integer> refs) throws IOException {
+        if (el == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name(ELEMENT_ID).value(el.elementId);
+        out.name(TAG).value(el.tag);
+        if (el.textContent != null && !el.textContent.isEmpty()) {
+            out.name(TEXT).value(el.textContent);
+        }
+        writeMap(out, STYLES, STYLES_REF, el.styles, refs);
+        writeMap(out, ATTRIBUTES, ATTRIBUTES_REF, el.attributes, refs);
+        if (el.children != null && !el.children.isEmpty()) {
+            out.name(CHILDREN).beginArray();
+            for (BlocElement child : el.children) {
+                write(out, child, refs);
+            }
+            out.endArray();
+        }
+        out.endObject();
+    }
+
+    @Override
+    public BlocElement read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String elementId = null;
+        String tag = "div";
+        String text = "";
+        Map<String, String> styles = null;
+        Map<String, String> attributes = null;
+        List<BlocElement> children = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case ELEMENT_ID:
+                    elementId = in.nextString();
+                    break;
+                case TAG:
+                    tag = intern(in.nextString());
+                    break;
+                case TEXT:
+                    text = in.nextString();
+                    break;
+                case STYLES:
+                    styles = readMap(in);
+                    break;
+                case ATTRIBUTES:
+                    attributes = readMap(in);
+                    break;
+                case STYLES_REF:
+                    styles = new SharedProperties(block(in.nextInt()));
+                    break;
+                case ATTRIBUTES_REF:
+                    attributes = new SharedProperties(block(in.nextInt()));
+                    break;
+                case CHILDREN:
+                    children = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        BlocElement child = read(in);
+                        if (child != null) children.add(child);
+                    }
+                    in.endArray();
+                    break;
+                default:
+                    in.skipValue();  // isSelected, parentId and unknown fields
+            }
+        }
+        in.endObject();
+
+        BlocElement el = new BlocElement(elementId, tag, text,
+            styles != null ? styles : new SharedProperties(),
+            attributes != null ? attributes : new SharedProperties(),
+            children != null ? children : new ArrayList<>());
+        for (BlocElement child : el.children) {
+            child.parentId = el.elementId;
+        }
+        return el;
+    }
+
+    /**
+     * Write a list of top-level elements. Without repeated style or attribute
+     * maps this is a plain JSON array; otherwise an object holding the shared
+     * "blocks" and the "elements" array that references them.
+     */
+    public void writeList(List<BlocElement> elements, Writer writer) throws IOException {
+        JsonWriter out = new JsonWriter(writer);
+        Map<PropertyMap, Integer> counts = new IdentityHashMap<>();
+        countMaps(elements, counts);
+        Map<PropertyMap, Integer> refs = new IdentityHashMap<>();
+        List<PropertyMap> shared = new ArrayList<>();
+        for (Map.Entry<PropertyMap, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 1) {
+                refs.put(entry.getKey(), shared.size());
+                shared.add(entry.getKey());
+            }
+        }
+
+        if (!shared.isEmpty()) {
+            out.beginObject();
+            out.name(BLOCKS).beginArray();
+            for (PropertyMap block : shared) {
+                writeObject(out, block);
+            }
+            out.endArray();
+            out.name(ELEMENTS);
+        }
+        out.beginArray();
+        for (BlocElement el : elements) {
+            write(out, el, shared.isEmpty() ? null : refs);
+        }
+        out.endArray();
+        if (!shared.isEmpty()) {
+            out.endObject();
+        }
+        out.flush();
+    }
+
+    /**
+     * Read top-level elements written by writeList (either form)
+     */
+    public List<BlocElement> readList(Reader reader) throws IOException {
+        JsonReader in = new JsonReader(reader);
+        List<BlocElement> elements = new ArrayList<>();
+        if (in.peek() == JsonToken.NULL) {
+            return elements;
+        }
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            readElements(in, elements);
+            return elements;
+        }
+        in.beginObject();
+        try {
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (BLOCKS.equals(name)) {
+                    readBlocks(in);
+                } else if (ELEMENTS.equals(name)) {
+                    readElements(in, elements);
+                } else {
+                    in.skipValue();
+                }
+            }
+        } finally {
+            blocks = null;
+        }
+        in.endObject();
+        return elements;
+    }
+
+    /**
+     * Read top-level elements written by writeList (either form) straight into
+     * a CompactDocument, without a BlocElement per element; for pages too large
+     * to hold as objects
+     */
+    public CompactDocument readCompact(Reader reader) throws IOException {
+        JsonReader in = new JsonReader(reader);
+        CompactDocument doc = new CompactDocument();
+        if (in.peek() == JsonToken.NULL) {
+            return doc;
+        }
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            readCompactElements(in, doc, null);
+            return doc;
+        }
+        in.beginObject();
+        try {
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (BLOCKS.equals(name)) {
+                    readBlocks(in);
+                } else if (ELEMENTS.equals(name)) {
+                    readCompactElements(in, doc, null);
+                } else {
+                    in.skipValue();
+                }
+            }
+        } finally {
+            blocks = null;
+        }
+        in.endObject();
+        return doc;
+    }
+
+    private void readBlocks(JsonReader in) throws IOException {
+        blocks = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            blocks.add(PropertyMap.of(readMap(in)));
+        }
+        in.endArray();
+    }
+
+    private void readCompactElements(JsonReader in, CompactDocument doc, CompactDocument.Element parent)
+            throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            readCompact(in, doc, parent);
+        }
+        in.endArray();
+    }
+
+    /**
+     * Same fields as read(JsonReader). The node is created once its children
+     * start, so fields written after them are applied to it afterwards.
+     */
+    private void readCompact(JsonReader in, CompactDocument doc, CompactDocument.Element parent)
+            throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return;
+        }
+
+        String elementId = null;
+        String tag = "div";
+        String text = "";
+        Map<String, String> styles = null;
+        Map<String, String> attributes = null;
+        CompactDocument.Element node = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case ELEMENT_ID:
+                    elementId = in.nextString();
+                    break;
+                case TAG:
+                    tag = in.nextString();
+                    break;
+                case TEXT:
+                    text = in.nextString();
+                    break;
+                case STYLES:
+                    styles = readPairs(in);
+                    break;
+                case ATTRIBUTES:
+                    attributes = readPairs(in);
+                    break;
+                case STYLES_REF:
+                    styles = block(in.nextInt());
+                    break;
+                case ATTRIBUTES_REF:
+                    attributes = block(in.nextInt());
+                    break;
+                case CHILDREN:
+                    if (node == null) {
+                        node = doc.append(parent, elementId, tag, text, styles, attributes);
+                    }
+                    readCompactElements(in, doc, node);
+                    break;
+                default:
+                    in.skipValue();  // isSelected, parentId and unknown fields
+            }
+        }
+        in.endObject();
+
+        if (node == null) {
+            doc.append(parent, elementId, tag, text, styles, attributes);
+        } else if (!node.getTag().equals(tag) || (elementId != null && !elementId.equals(node.getElementId()))) {
+            throw new IOException("Element " + elementId + " names its tag or ID after its children");
+        } else {
+            node.setTextContent(text);
+            if (styles != null) styles.forEach(node::setStyle);
+            if (attributes != null) attributes.forEach(node::setAttribute);
+        }
+    }
+
+    private void readElements(JsonReader in, List<BlocElement> elements) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            BlocElement el = read(in);
+            if (el != null) elements.add(el);
+        }
+        in.endArray();
+    }
+
+    /**
+     * Serialize a tree to a JSON string in the writeList format (blocks and
+     * stylesRef when maps repeat); used for journaled subtrees
+     */
+    String serializeTree(List<BlocElement> elements) {
+        StringWriter writer = new StringWriter();
+        try {
+            writeList(elements, writer);
+        } catch (IOException e) {
+            throw new AssertionError(e);  // StringWriter never throws
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Parse a JSON element tree; null or empty input yields an empty tree
+     */
+    public List<BlocElement> parseTree(String json) throws IOException {
+        if (json == null || json.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return readList(new StringReader(json));
+    }
+
+    /**
+     * Serialize a style/attribute map as a JSON object; empty maps yield null
+     */
+    public String serializeMap(Map<String, String> map) {
+        if (map == null || map.isEmpty()) return null;
+        StringWriter writer = new StringWriter();
+        try {
+            JsonWriter out = new JsonWriter(writer);
+            out.beginObject();
+            for (Map.Entry<String, String> entry : map.entrySet()) {
+                out.name(entry.getKey()).value(entry.getValue());
+            }
+            out.endObject();
+            out.flush();
+        } catch (IOException e) {
+            throw new AssertionError(e);  // StringWriter never throws
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Parse a map written by serializeMap; null yields an empty map
+     */
+    public SharedProperties parseMap(String json) throws IOException {
+        if (json == null || json.isEmpty()) {
+            return new SharedProperties();
+        }
+        return readMap(new JsonReader(new StringReader(json)));
+    }
+
+    private void writeMap(JsonWriter out, String name, String refName, Map<String, String> map,
+                          Map<PropertyMap, Integer> refs) throws IOException {
+        if (map == null || map.isEmpty()) return;
+        Integer ref = refs != null ? refs.get(PropertyMap.of(map)) : null;
+        if (ref != null) {
+            out.name(refName).value(ref);
+        } else {
+            out.name(name);
+            writeObject(out, map);
+        }
+    }
+
+    private static void writeObject(JsonWriter out, Map<String, String> map) throws IOException {
+        out.beginObject();
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            out.name(entry.getKey()).value(entry.getValue());
+        }
+        out.endObject();
+    }
+
+    private static void countMaps(List<BlocElement> elements, Map<PropertyMap, Integer> counts) {
+        for (BlocElement el : elements) {
+            count(el.styles, counts);
+            count(el.attributes, counts);
+            countMaps(el.children, counts);
+        }
+    }
+
+    private static void count(Map<String, String> map, Map<PropertyMap, Integer> counts) {
+        if (map == null || map.isEmpty()) return;
+        PropertyMap shared = PropertyMap.of(map);
+        Integer n = counts.get(shared);
+        counts.put(shared, n != null ? n + 1 : 1);
+    }
+
+    private PropertyMap block(int index) throws IOException {
+        if (blocks == null || index < 0 || index >= blocks.size()) {
+            throw new IOException("Unknown style block " + index);
+        }
+        return blocks.get(index);
+    }
+
+    private SharedProperties readMap(JsonReader in) throws IOException {
+        return new SharedProperties(readPairs(in));
+    }
+
+    private Map<String, String> readPairs(JsonReader in) throws IOException {
+        Map<String, String> map = new HashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = intern(in.nextName());
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            map.put(key, in.nextString());
+        }
+        in.endObject();
+        return map;
+    }
+
+    private String intern(String value) {
+        String pooled = pool.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+}
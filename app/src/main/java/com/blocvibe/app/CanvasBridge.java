@@ -0,0 +1,259 @@
+package com.blocvibe.app;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+import android.webkit.WebMessage;
+import android.webkit.WebMessagePort;
+import android.webkit.WebView;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CanvasBridge - Batched two-way channel between the editor and the canvas page.
+ * Uses a single WebMessagePort per loaded document instead of one
+ * evaluateJavascript / @JavascriptInterface call per event. Outgoing events are
+ * queued and sent as one numbered frame per display frame (Choreographer);
+ * the page does the same with requestAnimationFrame. Incoming events are
+ * dispatched to typed handlers. Every frame carrying events is acknowledged by
+ * the other side, which gives a continuous round-trip latency measurement.
+ * The page-side half is assets/canvas/bloc-bridge.js.
+ * Main thread only.
+ */
+public class CanvasBridge {
+
+    private static final String TAG = "CanvasBridge";
+    private static final String INIT_MESSAGE = "bloc-bridge-init";  // Matches bloc-bridge.js
+    private static final int LATENCY_LOG_INTERVAL = 100;  // Frames between latency log lines
+    private static final int MAX_PENDING_ACKS = 64;
+
+    /**
+     * Receives the decoded payload of one event type
+     */
+    public interface EventHandler<T> {
+        void onEvent(T data);
+    }
+
+    /**
+     * Wire format of one batch: {"seq":n,"ack":m,"events":[{"type":...,"data":...}]}
+     */
+    static class Frame {
+        long seq;
+        long ack;  // Highest frame seq received from the other side, 0 if none
+        List<Event> events;
+    }
+
+    static class Event {
+        String type;
+        JsonElement data;
+        transient String key;  // Coalescing key; a newer event with the same key replaces the queued one
+
+        Event(String type, JsonElement data, String key) {
+            this.type = type;
+            this.data = data;
+            this.key = key;
+        }
+    }
+
+    private final Gson gson = new Gson();
+    private final Map<String, Registration<?>> handlers = new HashMap<>();
+    private final Map<String, Event> queue = new LinkedHashMap<>();
+    private final Choreographer.FrameCallback flushCallback = frameTimeNanos -> flush();
+
+    private WebMessagePort port;
+    private boolean flushScheduled;
+    private int unkeyedCount;     // Gives unkeyed events unique queue slots
+    private long nextSeq = 1;
+    private long lastReceivedSeq;
+    private boolean ackPending;   // Received events not yet acknowledged
+
+    // Round-trip latency bookkeeping
+    private final LinkedHashMap<Long, Long> sentAt = new LinkedHashMap<Long, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > MAX_PENDING_ACKS;
+        }
+    };
+    private double lastRoundTripMs;
+    private double averageRoundTripMs;
+    private long roundTrips;
+    private long droppedFrames;
+
+    /**
+     * Register the handler for one incoming event type
+     */
+    public <T> void on(String type, Class<T> dataType, EventHandler<T> handler) {
+        handlers.put(type, new Registration<>(dataType, handler));
+    }
+
+    /**
+     * Open a fresh channel to the document currently loaded in the WebView.
+     * Must be called after every page load; the previous port is closed.
+     */
+    public void connect(WebView webView) {
+        disconnect();
+        WebMessagePort[] ports = webView.createWebMessageChannel();
+        port = ports[0];
+        port.setWebMessageCallback(new WebMessagePort.WebMessageCallback() {
+            @Override
+            public void onMessage(WebMessagePort port, WebMessage message) {
+                receive(message.getData());
+            }
+        });
+        webView.postWebMessage(new WebMessage(INIT_MESSAGE, new WebMessagePort[]{ports[1]}), Uri.parse("*"));
+    }
+
+    /**
+     * Drop the channel, e.g. before the page is reloaded. Queued events are discarded.
+     */
+    public void disconnect() {
+        if (port != null) {
+            port.close();
+            port = null;
+        }
+        queue.clear();
+        sentAt.clear();
+        nextSeq = 1;
+        lastReceivedSeq = 0;
+        ackPending = false;
+    }
+
+    public boolean isConnected() {
+        return port != null;
+    }
+
+    /**
+     * Queue an event for the next frame
+     */
+    public void send(String type, Object data) {
+        send(type, data, null);
+    }
+
+    /**
+     * Queue an event; a later event with the same key in the same frame replaces it
+     */
+    public void send(String type, Object data, String key) {
+        Event event = new Event(type, gson.toJsonTree(data), key);
+        if (key != null) {
+            queue.remove(key);  // Re-insert so ordering follows the newest event
+            queue.put(key, event);
+        } else {
+            queue.put("#" + (unkeyedCount++), event);
+        }
+        scheduleFlush();
+    }
+
+    public double getLastRoundTripMs() {
+        return lastRoundTripMs;
+    }
+
+    public double getAverageRoundTripMs() {
+        return averageRoundTripMs;
+    }
+
+    public long getRoundTripCount() {
+        return roundTrips;
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            Choreographer.getInstance().postFrameCallback(flushCallback);
+        }
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        if (port == null) return;
+        if (queue.isEmpty() && !ackPending) return;
+
+        Frame frame = new Frame();
+        frame.seq = nextSeq++;
+        frame.ack = lastReceivedSeq;
+        frame.events = new ArrayList<>(queue.values());
+        queue.clear();
+        unkeyedCount = 0;
+        ackPending = false;
+
+        if (!frame.events.isEmpty()) {
+            sentAt.put(frame.seq, SystemClock.elapsedRealtimeNanos());
+        }
+        port.postMessage(new WebMessage(gson.toJson(frame)));
+    }
+
+    private void receive(String json) {
+        Frame frame;
+        try {
+            frame = gson.fromJson(json, Frame.class);
+        } catch (JsonParseException e) {
+            Log.w(TAG, "Malformed frame", e);
+            return;
+        }
+        if (frame == null) return;
+
+        if (frame.seq <= lastReceivedSeq) {
+            return;  // Duplicate or stale frame
+        }
+        if (frame.seq != lastReceivedSeq + 1) {
+            droppedFrames += frame.seq - lastReceivedSeq - 1;
+            Log.w(TAG, "Missing frames before " + frame.seq + " (" + droppedFrames + " total)");
+        }
+        lastReceivedSeq = frame.seq;
+        recordAck(frame.ack);
+
+        // Ack-only frames are not acknowledged back, otherwise the two sides would ping-pong forever
+        if (frame.events != null && !frame.events.isEmpty()) {
+            for (Event event : frame.events) {
+                dispatch(event);
+            }
+            ackPending = true;
+            scheduleFlush();  // Acknowledge in the next frame even if nothing else is queued
+        }
+    }
+
+    private void recordAck(long ack) {
+        Long sent = sentAt.remove(ack);
+        if (sent == null) return;
+        lastRoundTripMs = (SystemClock.elapsedRealtimeNanos() - sent) / 1e6;
+        roundTrips++;
+        averageRoundTripMs += (lastRoundTripMs - averageRoundTripMs) / Math.min(roundTrips, 50);
+        if (roundTrips % LATENCY_LOG_INTERVAL == 0) {
+            Log.d(TAG, String.format("Round trip: last %.1f ms, avg %.1f ms over %d frames",
+                lastRoundTripMs, averageRoundTripMs, roundTrips));
+        }
+    }
+
+    private void dispatch(Event event) {
+        Registration<?> registration = handlers.get(event.type);
+        if (registration == null) {
+            Log.w(TAG, "No handler for event " + event.type);
+            return;
+        }
+        try {
+            registration.deliver(gson, event.data);
+        } catch (JsonParseException e) {
+            Log.w(TAG, "Bad payload for " + event.type, e);
+        }
+    }
+
+    private static class Registration<T> {
+        final Class<T> dataType;
+        final EventHandler<T> handler;
+
+        Registration(Class<T> dataType, EventHandler<T> handler) {
+            this.dataType = dataType;
+            this.handler = handler;
+        }
+
+        void deliver(Gson gson, JsonElement data) {
+            handler.onEvent(gson.fromJson(data, dataType));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.blocvibe.app;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CanvasPatch - A single DOM operation sent to the already-loaded canvas page.
+ * A batch of these is serialized to JSON and applied by the canvas script
+ * instead of reloading the whole document.
+ */
+public class CanvasPatch {
+    public static final String INSERT = "insert";
+    public static final String MOVE = "move";
+    public static final String REMOVE = "remove";
+    public static final String SET_ATTR = "set-attr";
+    public static final String SET_STYLE = "set-style";
+    public static final String SET_TEXT = "set-text";
+    public static final String SET_CSS = "set-css";
+    public static final String SET_PROPS = "set-props";
+    public static final String ADD_RULES = "add-rules";
+
+    public String op;        // One of the constants above
+    public String id;        // Target element ID (data-bloc-id)
+    public String parentId;  // New parent for insert/move, null means <body>
+    public String afterId;   // Previous sibling for insert/move, null means first child
+    public String html;      // Subtree markup for insert
+    public String name;      // Attribute or style property name
+    public String value;     // New value, null removes the attribute/property
+    public Map<String, String> attributes;  // set-props: attributes to set
+    public Map<String, String> styles;      // set-props: style properties, "" removes
+    public Map<String, String> rules;       // add-rules, set-props: generated class -> declarations
+
+    /**
+     * Payload of a "patch" bridge event
+     */
+    public static class Batch {
+        public List<CanvasPatch> ops;
+
+        public Batch(List<CanvasPatch> ops) {
+            this.ops = ops;
+        }
+    }
+
+    private CanvasPatch(String op, String id) {
+        this.op = op;
+        this.id = id;
+    }
+
+    public static CanvasPatch insert(String parentId, String afterId, String id, String html) {
+        CanvasPatch patch = new CanvasPatch(INSERT, id);
+        patch.parentId = parentId;
+        patch.afterId = afterId;
+        patch.html = html;
+        return patch;
+    }
+
+    public static CanvasPatch move(String parentId, String afterId, String id) {
+        CanvasPatch patch = new CanvasPatch(MOVE, id);
+        patch.parentId = parentId;
+        patch.afterId = afterId;
+        return patch;
+    }
+
+    public static CanvasPatch remove(String id) {
+        return new CanvasPatch(REMOVE, id);
+    }
+
+    public static CanvasPatch setAttribute(String id, String name, String value) {
+        CanvasPatch patch = new CanvasPatch(SET_ATTR, id);
+        patch.name = name;
+        patch.value = value;
+        return patch;
+    }
+
+    public static CanvasPatch setStyle(String id, String name, String value) {
+        CanvasPatch patch = new CanvasPatch(SET_STYLE, id);
+        patch.name = name;
+        patch.value = value;
+        return patch;
+    }
+
+    public static CanvasPatch setText(String id, String value) {
+        CanvasPatch patch = new CanvasPatch(SET_TEXT, id);
+        patch.value = value;
+        return patch;
+    }
+
+    /**
+     * Several attribute and style changes to one element in a single operation
+     */
+    public static CanvasPatch setProps(String id, Map<String, String> attributes, Map<String, String> styles) {
+        CanvasPatch patch = new CanvasPatch(SET_PROPS, id);
+        patch.attributes = attributes;
+        patch.styles = styles;
+        return patch;
+    }
+
+    /**
+     * Generated style classes the page does not have yet (see StyleClasses)
+     */
+    public static CanvasPatch addRules(Map<String, String> rules) {
+        CanvasPatch patch = new CanvasPatch(ADD_RULES, null);
+        patch.rules = rules;
+        return patch;
+    }
+
+    public static CanvasPatch setCss(String css) {
+        CanvasPatch patch = new CanvasPatch(SET_CSS, null);
+        patch.value = css;
+        return patch;
+    }
+}
@@ -0,0 +1,364 @@
+package com.blocvibe.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * CanvasPatcher - Diffs the element tree against the state last sent to the
+ * canvas WebView and produces a minimal batch of {@link CanvasPatch} operations.
+ * A full page reload is only needed when no snapshot exists yet or the batch
+ * would be larger than simply reloading. Styles reach the page as generated
+ * classes (see StyleClasses): a style edit re-points the element's class and
+ * sends the new rule if the page does not have it yet.
+ * Not thread-safe; CanvasRenderer confines it to its worker thread.
+ */
+public class CanvasPatcher {
+
+    /**
+     * Renders the markup of a single element subtree for insert operations
+     */
+    public interface SubtreeRenderer {
+        String render(BlocElement element);
+    }
+
+    // Past this many operations a full reload is cheaper than patching
+    private static final int MAX_PATCH_OPS = 500;
+
+    private final SubtreeRenderer renderer;
+    private Map<String, NodeSnapshot> snapshot;  // State currently shown in the page
+    private List<String> rootIds;
+    private String css;
+    private Set<String> rules;  // Generated classes the page has; never shrinks until reset
+
+    public CanvasPatcher(SubtreeRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    /**
+     * Record the tree as fully rendered (call after a full page load)
+     */
+    public void reset(List<BlocElement> tree, String css) {
+        snapshot = new HashMap<>();
+        rootIds = takeSnapshot(tree, null, snapshot);
+        this.css = css;
+        rules = new HashSet<>();
+        for (NodeSnapshot node : snapshot.values()) {
+            if (!node.styles.isEmpty()) rules.add(StyleClasses.className(node.styles));
+        }
+    }
+
+    /**
+     * Forget the page state so the next render falls back to a full reload
+     */
+    public void invalidate() {
+        snapshot = null;
+        rootIds = null;
+        css = null;
+        rules = null;
+    }
+
+    public boolean hasSnapshot() {
+        return snapshot != null;
+    }
+
+    /**
+     * Page form of a set-props patch from the property editor, called with
+     * the element already updated: style changes become the element's new
+     * generated class, carrying its rule in case the page lacks it
+     */
+    public static CanvasPatch forPage(CanvasPatch patch, BlocElement element) {
+        if (!CanvasPatch.SET_PROPS.equals(patch.op) || element == null
+                || (patch.styles.isEmpty() && !patch.attributes.containsKey("class"))) {
+            return patch;
+        }
+        Map<String, String> attributes = new HashMap<>(patch.attributes);
+        String classAttribute = StyleClasses.classAttribute(element.attributes.get("class"), element.styles);
+        attributes.put("class", classAttribute != null ? classAttribute : "");
+        CanvasPatch page = CanvasPatch.setProps(patch.id, attributes, Collections.emptyMap());
+        if (!element.styles.isEmpty()) {
+            page.rules = Collections.singletonMap(StyleClasses.className(element.styles),
+                                                  StyleClasses.declarations(element.styles));
+        }
+        return page;
+    }
+
+    /**
+     * Record set-props operations that were sent to the page directly, so the
+     * next diff does not emit them again. Takes the patches as the property
+     * editor made them, before forPage().
+     */
+    public void acknowledge(List<CanvasPatch> patches) {
+        if (snapshot == null) return;
+        for (CanvasPatch patch : patches) {
+            NodeSnapshot node = snapshot.get(patch.id);
+            if (node == null || !CanvasPatch.SET_PROPS.equals(patch.op)) continue;
+            for (Map.Entry<String, String> attr : patch.attributes.entrySet()) {
+                node.attributes = node.attributes.with(attr.getKey(), attr.getValue());
+            }
+            for (Map.Entry<String, String> style : patch.styles.entrySet()) {
+                node.styles = style.getValue().isEmpty()
+                    ? node.styles.without(style.getKey())
+                    : node.styles.with(style.getKey(), style.getValue());
+            }
+            if (!node.styles.isEmpty()) {
+                rules.add(StyleClasses.className(node.styles));  // forPage() sent the rule along
+            }
+        }
+    }
+
+    /**
+     * Compute the operations that bring the page in line with the tree. The
+     * snapshot is left untouched until the result is passed to commit(), so a
+     * diff that turns out to be stale can simply be dropped.
+     * @return the pending diff (ops possibly empty), or null if a full reload is required
+     */
+    public Diff diff(List<BlocElement> tree, String css) {
+        if (snapshot == null) {
+            return null;
+        }
+
+        Map<String, NodeSnapshot> next = new HashMap<>();
+        List<String> nextRootIds = takeSnapshot(tree, null, next);
+        List<CanvasPatch> ops = new ArrayList<>();
+        Map<String, String> newRules = new LinkedHashMap<>();
+
+        if (!Objects.equals(this.css, css)) {
+            ops.add(CanvasPatch.setCss(css));
+        }
+
+        // Old DOM nodes that must go: deleted, re-tagged, or re-created inside an inserted subtree
+        Set<String> stale = new HashSet<>();
+        Set<String> deleted = new HashSet<>();
+        for (String id : snapshot.keySet()) {
+            NodeSnapshot now = next.get(id);
+            if (now == null) {
+                deleted.add(id);
+                stale.add(id);
+            } else if (!now.tag.equals(snapshot.get(id).tag)) {
+                stale.add(id);
+            }
+        }
+
+        diffChildren(null, rootIds, nextRootIds, tree, next, stale, newRules, ops);
+        if (ops.size() > MAX_PATCH_OPS) {
+            return null;
+        }
+        if (!newRules.isEmpty()) {
+            ops.add(0, CanvasPatch.addRules(newRules));  // Before the markup that uses them
+        }
+
+        // Removals go last; the page resolves their targets before applying inserts
+        for (String id : stale) {
+            String oldParent = snapshot.get(id).parentId;
+            if (oldParent == null || !stale.contains(oldParent)) {
+                ops.add(CanvasPatch.remove(id));
+            }
+        }
+
+        return new Diff(ops, next, nextRootIds, css, newRules.keySet(), deleted);
+    }
+
+    /**
+     * Adopt the tree of a diff as the page state, once its ops are on their way to the page
+     */
+    public void commit(Diff diff) {
+        snapshot = diff.next;
+        rootIds = diff.rootIds;
+        css = diff.css;
+        rules.addAll(diff.rules);
+    }
+
+    private void diffChildren(String parentId, List<String> oldIds, List<String> newIds,
+                              List<BlocElement> children, Map<String, NodeSnapshot> next,
+                              Set<String> stale, Map<String, String> newRules, List<CanvasPatch> ops) {
+        // Children that stay under this parent keep their DOM node; only those
+        // outside the longest in-order run need to be moved.
+        Map<String, Integer> oldIndex = new HashMap<>();
+        for (int i = 0; i < oldIds.size(); i++) {
+            oldIndex.put(oldIds.get(i), i);
+        }
+        Set<String> inOrder = longestOrderedRun(newIds, oldIndex, stale);
+
+        String afterId = null;
+        for (BlocElement child : children) {
+            String id = child.elementId;
+            NodeSnapshot before = snapshot.get(id);
+            if (before == null || stale.contains(id)) {
+                ops.add(CanvasPatch.insert(parentId, afterId, id, renderer.render(child)));
+                markCovered(child, stale);
+                Set<PropertyMap> styles = new LinkedHashSet<>();
+                StyleClasses.collect(Collections.singletonList(child), styles);
+                for (PropertyMap map : styles) {
+                    requireRule(map, newRules);
+                }
+            } else {
+                if (!inOrder.contains(id)) {
+                    ops.add(CanvasPatch.move(parentId, afterId, id));
+                }
+                diffNode(before, next.get(id), newRules, ops);
+                diffChildren(id, before.childIds, next.get(id).childIds, child.children, next, stale,
+                             newRules, ops);
+            }
+            afterId = id;
+        }
+    }
+
+    private void diffNode(NodeSnapshot before, NodeSnapshot after, Map<String, String> newRules,
+                          List<CanvasPatch> ops) {
+        if (!Objects.equals(before.text, after.text)) {
+            ops.add(CanvasPatch.setText(after.id, after.text));
+        }
+        // Maps are hash-consed, so unchanged property sets are the same instance
+        if (before.attributes != after.attributes) {
+            diffAttributes(after.id, before.attributes, after.attributes, ops);
+        }
+        // The class attribute combines the user's classes with the generated style class
+        String beforeClass = before.attributes.get("class");
+        String afterClass = after.attributes.get("class");
+        if (before.styles != after.styles || !Objects.equals(beforeClass, afterClass)) {
+            String oldValue = StyleClasses.classAttribute(beforeClass, before.styles);
+            String newValue = StyleClasses.classAttribute(afterClass, after.styles);
+            if (!Objects.equals(oldValue, newValue)) {
+                ops.add(CanvasPatch.setAttribute(after.id, "class", newValue));
+            }
+            requireRule(after.styles, newRules);
+        }
+    }
+
+    private static void diffAttributes(String id, Map<String, String> before, Map<String, String> after,
+                                       List<CanvasPatch> ops) {
+        for (Map.Entry<String, String> entry : after.entrySet()) {
+            if (!"class".equals(entry.getKey()) && !Objects.equals(before.get(entry.getKey()), entry.getValue())) {
+                ops.add(CanvasPatch.setAttribute(id, entry.getKey(), entry.getValue()));
+            }
+        }
+        for (String name : before.keySet()) {
+            if (!"class".equals(name) && !after.containsKey(name)) {
+                ops.add(CanvasPatch.setAttribute(id, name, null));
+            }
+        }
+    }
+
+    private void requireRule(PropertyMap styles, Map<String, String> newRules) {
+        if (styles.isEmpty()) return;
+        String name = StyleClasses.className(styles);
+        if (!rules.contains(name) && !newRules.containsKey(name)) {
+            newRules.put(name, StyleClasses.declarations(styles));
+        }
+    }
+
+    /**
+     * Existing nodes rendered again inside an inserted subtree replace their old DOM nodes
+     */
+    private void markCovered(BlocElement element, Set<String> stale) {
+        for (BlocElement child : element.children) {
+            if (snapshot.containsKey(child.elementId)) {
+                stale.add(child.elementId);
+            }
+            markCovered(child, stale);
+        }
+    }
+
+    /**
+     * IDs of the longest subsequence of newIds that already appears in the same
+     * relative order among the old children (patience-sort LIS over old indexes).
+     */
+    private static Set<String> longestOrderedRun(List<String> newIds, Map<String, Integer> oldIndex,
+                                                 Set<String> stale) {
+        int n = newIds.size();
+        int[] positions = new int[n];
+        int[] tails = new int[n];
+        int[] previous = new int[n];
+        int length = 0;
+        Arrays.fill(previous, -1);
+
+        for (int i = 0; i < n; i++) {
+            String id = newIds.get(i);
+            Integer old = oldIndex.get(id);
+            if (old == null || stale.contains(id)) {
+                positions[i] = -1;
+                continue;
+            }
+            positions[i] = old;
+            int lo = 0, hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (positions[tails[mid]] < old) lo = mid + 1; else hi = mid;
+            }
+            if (lo > 0) previous[i] = tails[lo - 1];
+            tails[lo] = i;
+            if (lo == length) length++;
+        }
+
+        Set<String> result = new HashSet<>();
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = previous[i]) {
+            result.add(newIds.get(i));
+        }
+        return result;
+    }
+
+    private static List<String> takeSnapshot(List<BlocElement> elements, String parentId,
+                                             Map<String, NodeSnapshot> into) {
+        List<String> ids = new ArrayList<>(elements.size());
+        for (BlocElement el : elements) {
+            NodeSnapshot node = new NodeSnapshot(el, parentId);
+            node.childIds = takeSnapshot(el.children, el.elementId, into);
+            into.put(el.elementId, node);
+            ids.add(el.elementId);
+        }
+        return ids;
+    }
+
+    /**
+     * Operations from one diff plus the state they lead to
+     */
+    public static class Diff {
+        public final List<CanvasPatch> ops;
+        public final Set<String> deletedIds;  // Elements in the page state that left the tree
+        private final Map<String, NodeSnapshot> next;
+        private final List<String> rootIds;
+        private final String css;
+        private final Set<String> rules;  // Generated classes the ops add to the page
+
+        private Diff(List<CanvasPatch> ops, Map<String, NodeSnapshot> next, List<String> rootIds, String css,
+                     Set<String> rules, Set<String> deletedIds) {
+            this.ops = ops;
+            this.deletedIds = deletedIds;
+            this.next = next;
+            this.rootIds = rootIds;
+            this.css = css;
+            this.rules = rules;
+        }
+    }
+
+    /**
+     * Copy of the rendered state of one element
+     */
+    private static class NodeSnapshot {
+        final String id;
+        final String parentId;
+        final String tag;
+        final String text;
+        PropertyMap attributes;  // Shared immutable maps; acknowledge() swaps in new ones
+        PropertyMap styles;
+        List<String> childIds;
+
+        NodeSnapshot(BlocElement el, String parentId) {
+            this.id = el.elementId;
+            this.parentId = parentId;
+            this.tag = el.tag;
+            this.text = el.textContent != null ? el.textContent : "";
+            this.attributes = PropertyMap.of(el.attributes);
+            this.styles = PropertyMap.of(el.styles);
+        }
+    }
+}
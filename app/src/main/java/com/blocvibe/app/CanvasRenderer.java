@@ -0,0 +1,154 @@
+package com.blocvibe.app;
+
+import android.os.Handler;
+import android.os.Looper;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * CanvasRenderer - Serializes and diffs the element tree for the canvas on a
+ * background thread. Each request works on a read-only snapshot of the tree
+ * taken on the main thread, so editing continues while a render is running.
+ * Requests are latest-wins: a newer request cancels queued ones and makes a
+ * running one drop its result before touching the patcher state, so only the
+ * newest tree reaches the WebView. The CanvasPatcher and serializer are only
+ * ever used on the worker thread.
+ * Public methods must be called on the main thread.
+ */
+public class CanvasRenderer {
+
+    /**
+     * Receives finished renders on the main thread
+     */
+    public interface Listener {
+        /** Incremental update for the loaded page */
+        void onPatch(CanvasPatch.Batch batch);
+
+        /** Whole body and stylesheet; the page replaces its content */
+        void onDocument(Document document);
+    }
+
+    /**
+     * Payload of the "render" bridge event: full body markup, project
+     * stylesheet and the generated style classes the markup refers to
+     */
+    public static class Document {
+        public final String html;
+        public final String css;
+        public final Map<String, String> rules;
+
+        Document(String html, String css, Map<String, String> rules) {
+            this.html = html;
+            this.css = css;
+            this.rules = rules;
+        }
+    }
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final HtmlSerializer serializer = HtmlSerializer.forCanvas();
+    private final CanvasPatcher patcher = new CanvasPatcher(serializer::render);
+    private final Listener listener;
+
+    private volatile long latest;  // Generation of the newest request
+    private long epoch;            // Bumped when the page is replaced; main thread only
+    private Future<?> pending;
+
+    public CanvasRenderer(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Patch the page to match the tree, or render it in full if patching is not possible
+     */
+    public void render(List<BlocElement> tree, String css) {
+        submit(tree, css, false);
+    }
+
+    /**
+     * Render the whole tree and replace the page content
+     */
+    public void reload(List<BlocElement> tree, String css) {
+        submit(tree, css, true);
+    }
+
+    /**
+     * Forget the page state (e.g. the document was reloaded). Results still in
+     * flight are discarded and the next render is a full one.
+     */
+    public void invalidate() {
+        epoch++;
+        latest++;
+        cancelPending();
+        worker.execute(patcher::invalidate);
+    }
+
+    /**
+     * Record set-props operations that were sent to the page directly, in the
+     * form CanvasPatcher.forPage() gave them
+     */
+    public void acknowledge(List<CanvasPatch> patches) {
+        worker.execute(() -> patcher.acknowledge(patches));
+    }
+
+    public void shutdown() {
+        latest++;
+        worker.shutdownNow();
+    }
+
+    private void submit(List<BlocElement> tree, String css, boolean full) {
+        List<BlocElement> frozen = BlocElement.snapshotTree(tree);
+        long generation = ++latest;
+        long requestEpoch = epoch;
+        cancelPending();
+        pending = worker.submit(() -> run(frozen, css, full, generation, requestEpoch));
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel(false);  // Only unstarted jobs; a running one checks the generation
+            pending = null;
+        }
+    }
+
+    private void run(List<BlocElement> tree, String css, boolean full,
+                     long generation, long requestEpoch) {
+        if (generation != latest) return;
+
+        if (!full && patcher.hasSnapshot()) {
+            CanvasPatcher.Diff diff = patcher.diff(tree, css);
+            if (generation != latest) return;  // Stale; the patcher state was not touched
+            if (diff != null) {
+                patcher.commit(diff);
+                serializer.evict(diff.deletedIds);
+                if (!diff.ops.isEmpty()) {
+                    CanvasPatch.Batch batch = new CanvasPatch.Batch(diff.ops);
+                    // Once committed the ops must reach the page, newer diffs build on them
+                    post(requestEpoch, () -> listener.onPatch(batch));
+                }
+                return;
+            }
+        }
+
+        String html = serializer.render(tree);
+        Set<PropertyMap> styles = new LinkedHashSet<>();
+        StyleClasses.collect(tree, styles);
+        if (generation != latest) return;
+        patcher.reset(tree, css);
+        Document document = new Document(html, css, StyleClasses.ruleMap(styles));
+        post(requestEpoch, () -> listener.onDocument(document));
+    }
+
+    private void post(long requestEpoch, Runnable delivery) {
+        mainHandler.post(() -> {
+            if (requestEpoch == epoch) {
+                delivery.run();
+            }
+        });
+    }
+}
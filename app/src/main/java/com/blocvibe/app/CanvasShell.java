@@ -0,0 +1,143 @@
+package com.blocvibe.app;
+
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.ViewGroup;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+/**
+ * CanvasShell - A WebView with the canvas runtime page already loaded.
+ * One shell is kept warm in the background (created when the main thread is
+ * idle), so opening a project only has to push the body content instead of
+ * paying for WebView start-up and a full document load. The WebView is created
+ * on a MutableContextWrapper and re-based onto the activity that acquires it.
+ * Main thread only.
+ */
+public class CanvasShell {
+
+    private static final String TAG = "CanvasShell";
+
+    // Canvas runtime page (see assets/canvas)
+    public static final String CANVAS_URL = "file:///android_asset/canvas/canvas.html";
+
+    /**
+     * Notified when the runtime page has (re)loaded and can be connected
+     */
+    public interface PageListener {
+        void onPageFinished(WebView view);
+    }
+
+    // "adb shell setprop log.tag.CanvasNoPrewarm DEBUG" makes every editor take the
+    // cold path, which is how the canvas was created before pre-warming
+    private static final String NO_PREWARM = "CanvasNoPrewarm";
+
+    private static CanvasShell warm;        // The idle shell waiting for an editor, if any
+    private static boolean prewarmScheduled;
+
+    private final MutableContextWrapper context;
+    private final WebView webView;
+    private final long createdAt = SystemClock.uptimeMillis();
+    private boolean pageFinished;
+    private boolean prewarmed;
+    private PageListener listener;
+
+    private CanvasShell(Context appContext) {
+        context = new MutableContextWrapper(appContext);
+        webView = new WebView(context);
+        webView.getSettings().setJavaScriptEnabled(true);
+        webView.getSettings().setDomStorageEnabled(true);
+        webView.setWebViewClient(new WebViewClient() {
+            @Override
+            public void onPageFinished(WebView view, String url) {
+                if (!pageFinished) {
+                    Log.d(TAG, "Runtime page loaded in " + (SystemClock.uptimeMillis() - createdAt) + " ms");
+                }
+                pageFinished = true;
+                if (listener != null) {
+                    listener.onPageFinished(view);
+                }
+            }
+        });
+        webView.loadUrl(CANVAS_URL);
+    }
+
+    /**
+     * Create the warm shell the next time the main thread is idle, unless one exists
+     */
+    public static void prewarm(Context context) {
+        if (warm != null || prewarmScheduled) return;
+        prewarmScheduled = true;
+        Context appContext = context.getApplicationContext();
+        Looper.myQueue().addIdleHandler(() -> {
+            prewarmScheduled = false;
+            warmUp(appContext);
+            return false;
+        });
+    }
+
+    /**
+     * Create the warm shell right now, unless one exists
+     */
+    public static void warmUp(Context context) {
+        if (warm == null) {
+            warm = new CanvasShell(context.getApplicationContext());
+            warm.prewarmed = true;
+        }
+    }
+
+    /**
+     * Take the warm shell for an activity, or create a cold one if none is ready
+     */
+    public static CanvasShell acquire(Context activity) {
+        CanvasShell shell = null;
+        if (!Log.isLoggable(NO_PREWARM, Log.DEBUG)) {
+            shell = warm;
+            warm = null;
+        }
+        if (shell == null) {
+            shell = new CanvasShell(activity.getApplicationContext());
+        }
+        shell.context.setBaseContext(activity);
+        return shell;
+    }
+
+    public WebView getWebView() {
+        return webView;
+    }
+
+    /**
+     * True if the shell was created ahead of time rather than on acquire
+     */
+    public boolean isPrewarmed() {
+        return prewarmed;
+    }
+
+    /**
+     * Set the page listener; it is called right away if the page already finished loading
+     */
+    public void setPageListener(PageListener listener) {
+        this.listener = listener;
+        if (listener != null && pageFinished) {
+            listener.onPageFinished(webView);
+        }
+    }
+
+    /**
+     * Destroy this shell and warm up a replacement. A used shell is never
+     * handed out again: its document still holds the previous project.
+     */
+    public void release() {
+        listener = null;
+        if (webView.getParent() instanceof ViewGroup) {
+            ((ViewGroup) webView.getParent()).removeView(webView);
+        }
+        webView.destroy();
+        Context appContext = context.getApplicationContext();
+        context.setBaseContext(appContext);
+        prewarm(appContext);
+    }
+}
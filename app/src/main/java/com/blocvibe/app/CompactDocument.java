@@ -0,0 +1,647 @@
+package com.blocvibe.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * CompactDocument - Struct-of-arrays element tree for very large documents.
+ * Each node is a slot in parallel int arrays (parent, first/last child,
+ * previous/next sibling, tag, text, ID); every string is stored once in an
+ * interned string table and referenced by index. Styles and attributes are
+ * packed (key, value) ranges in one shared int array. A 50k-node page costs
+ * roughly 60 bytes per node plus its distinct strings, instead of two
+ * HashMaps, an ArrayList and several Strings per BlocElement.
+ * Removed nodes go on a free list and their slots are reused; strings are
+ * reference counted and leave the table when nothing uses them, so a long
+ * editing session stays bounded by the live document.
+ * Callers work through the Element view, which mirrors the BlocElement API.
+ * BlocElementTypeAdapter.readCompact loads stored pages straight into one.
+ * Not thread-safe.
+ */
+public class CompactDocument {
+
+    public static final int NO_NODE = -1;
+
+    private static final int DOCUMENT = 0;  // Virtual parent of the top-level elements
+    private static final int NO_STRING = -1;
+
+    // Node columns; freed slots are chained through nextSibling
+    private int size;
+    private int freeNode = NO_NODE;
+    private int[] parent;
+    private int[] firstChild;
+    private int[] lastChild;
+    private int[] prevSibling;
+    private int[] nextSibling;
+    private int[] tag;
+    private int[] text;
+    private int[] id;
+    private int[] styleStart;
+    private int[] styleCount;
+    private int[] attrStart;
+    private int[] attrCount;
+
+    // Packed (key, value) string indices; ranges are relocated to the end when they grow
+    private int[] props = new int[64];
+    private int propsEnd;
+    private int propsGarbage;
+
+    // Interned strings with their use counts, and the node that owns each ID string
+    private String[] strings = new String[64];
+    private int[] stringRefs = new int[64];
+    private int stringCount;
+    private int[] freeStrings = new int[16];
+    private int freeStringCount;
+    private final HashMap<String, Integer> stringIndex = new HashMap<>();
+    private int[] nodeById = new int[64];
+
+    public CompactDocument() {
+        this(64);
+    }
+
+    public CompactDocument(int expectedNodes) {
+        int capacity = Math.max(2, expectedNodes + 1);
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        lastChild = new int[capacity];
+        prevSibling = new int[capacity];
+        nextSibling = new int[capacity];
+        tag = new int[capacity];
+        text = new int[capacity];
+        id = new int[capacity];
+        styleStart = new int[capacity];
+        styleCount = new int[capacity];
+        attrStart = new int[capacity];
+        attrCount = new int[capacity];
+        Arrays.fill(nodeById, NO_NODE);
+        allocate(NO_STRING, NO_STRING, NO_STRING);  // DOCUMENT
+    }
+
+    /**
+     * Copy a BlocElement tree, keeping element IDs
+     */
+    public static CompactDocument fromTree(List<BlocElement> roots) {
+        CompactDocument doc = new CompactDocument(countNodes(roots));
+        for (BlocElement root : roots) {
+            doc.copyIn(DOCUMENT, root);
+        }
+        return doc;
+    }
+
+    /**
+     * Materialize the document as a mutable BlocElement tree
+     */
+    public List<BlocElement> toTree() {
+        List<BlocElement> roots = new ArrayList<>();
+        for (int child = firstChild[DOCUMENT]; child != NO_NODE; child = nextSibling[child]) {
+            roots.add(copyOut(child));
+        }
+        return roots;
+    }
+
+    /**
+     * Number of live elements
+     */
+    public int countElements() {
+        return countDescendants(DOCUMENT);
+    }
+
+    public List<Element> getRoots() {
+        return children(DOCUMENT);
+    }
+
+    /**
+     * Look up an element by ID, or null if it is not in the document
+     */
+    public Element get(String elementId) {
+        Integer index = elementId != null ? stringIndex.get(elementId) : null;
+        int node = index != null && index < nodeById.length ? nodeById[index] : NO_NODE;
+        return node != NO_NODE ? new Element(node) : null;
+    }
+
+    /**
+     * Create an element and insert it under parent (null for top level) at position
+     */
+    public Element insert(Element parent, int position, String tagName) {
+        int node = allocate(acquire(tagName), acquire(""), NO_STRING);
+        assignId(node, "bloc-" + UUID.randomUUID().toString().substring(0, 8));
+        linkAt(parent != null ? parent.node : DOCUMENT, position, node);
+        return new Element(node);
+    }
+
+    /**
+     * Add an element read from storage as the last child of parent (null for
+     * top level); a missing ID is generated as for BlocElement
+     */
+    public Element append(Element parent, String elementId, String tagName, String textContent,
+                          Map<String, String> styles, Map<String, String> attributes) {
+        int node = allocate(acquire(tagName), acquire(textContent != null ? textContent : ""), NO_STRING);
+        assignId(node, elementId != null ? elementId : "bloc-" + UUID.randomUUID().toString().substring(0, 8));
+        styleStart[node] = propsEnd;
+        styleCount[node] = appendPairs(styles);
+        attrStart[node] = propsEnd;
+        attrCount[node] = appendPairs(attributes);
+        append(parent != null ? parent.node : DOCUMENT, node);
+        return new Element(node);
+    }
+
+    /**
+     * Approximate retained size in bytes of the arrays and string table
+     */
+    public long heapBytes() {
+        long bytes = 13L * 4 * parent.length + 4L * props.length + 4L * nodeById.length
+            + 8L * strings.length + 4L * freeStrings.length;
+        for (int i = 0; i < stringCount; i++) {
+            if (strings[i] != null) bytes += 40 + 2L * strings[i].length();
+        }
+        return bytes + 48L * stringIndex.size();  // HashMap entries
+    }
+
+    /**
+     * Lightweight handle to one node; cheap to create and compare by node index.
+     * Handles to removed elements must not be used for further edits.
+     */
+    public final class Element {
+        final int node;
+
+        Element(int node) {
+            this.node = node;
+        }
+
+        public String getElementId() {
+            return string(id[node]);
+        }
+
+        public String getTag() {
+            return string(tag[node]);
+        }
+
+        public String getTextContent() {
+            return string(text[node]);
+        }
+
+        public void setTextContent(String value) {
+            int next = acquire(value != null ? value : "");
+            release(text[node]);
+            text[node] = next;
+        }
+
+        public String getStyle(String name) {
+            return lookup(styleStart[node], styleCount[node], name);
+        }
+
+        public String getAttribute(String name) {
+            return lookup(attrStart[node], attrCount[node], name);
+        }
+
+        public void setStyle(String name, String value) {
+            if (value == null) {
+                styleCount[node] = removeKey(styleStart[node], styleCount[node], name);
+            } else {
+                putKey(node, true, name, value);
+            }
+        }
+
+        public void setAttribute(String name, String value) {
+            if (value == null) {
+                attrCount[node] = removeKey(attrStart[node], attrCount[node], name);
+            } else {
+                putKey(node, false, name, value);
+            }
+        }
+
+        /**
+         * Styles in stored order, as a new map
+         */
+        public Map<String, String> getStyles() {
+            return toMap(styleStart[node], styleCount[node]);
+        }
+
+        /**
+         * Attributes in stored order, as a new map
+         */
+        public Map<String, String> getAttributes() {
+            return toMap(attrStart[node], attrCount[node]);
+        }
+
+        /**
+         * Parent element, or null for top-level elements
+         */
+        public Element getParent() {
+            int p = parent[node];
+            return p != DOCUMENT && p != NO_NODE ? new Element(p) : null;
+        }
+
+        public List<Element> getChildren() {
+            return children(node);
+        }
+
+        public Element getFirstChild() {
+            return view(firstChild[node]);
+        }
+
+        public Element getNextSibling() {
+            return view(nextSibling[node]);
+        }
+
+        /**
+         * Unlink this element and its subtree from the document and free their slots
+         */
+        public void remove() {
+            unlink(node);
+            free(node);
+        }
+
+        /**
+         * Move this element under newParent (null for top level) at position,
+         * counted among the children after this element was taken out.
+         * Moving an element into its own subtree is rejected.
+         * @return true if the element was moved
+         */
+        public boolean moveTo(Element newParent, int position) {
+            int target = newParent != null ? newParent.node : DOCUMENT;
+            for (int n = target; n != NO_NODE; n = parent[n]) {
+                if (n == node) return false;
+            }
+            unlink(node);
+            linkAt(target, position, node);
+            return true;
+        }
+
+        /**
+         * Copy this element and its subtree out as a mutable BlocElement
+         */
+        public BlocElement toBlocElement() {
+            return copyOut(node);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Element && ((Element) other).node == node
+                && ((Element) other).owner() == CompactDocument.this;
+        }
+
+        @Override
+        public int hashCode() {
+            return node;
+        }
+
+        private CompactDocument owner() {
+            return CompactDocument.this;
+        }
+    }
+
+    private Element view(int node) {
+        return node != NO_NODE ? new Element(node) : null;
+    }
+
+    private List<Element> children(int node) {
+        List<Element> result = new ArrayList<>();
+        for (int child = firstChild[node]; child != NO_NODE; child = nextSibling[child]) {
+            result.add(new Element(child));
+        }
+        return result;
+    }
+
+    private int countDescendants(int node) {
+        int count = 0;
+        for (int child = firstChild[node]; child != NO_NODE; child = nextSibling[child]) {
+            count += 1 + countDescendants(child);
+        }
+        return count;
+    }
+
+    private static int countNodes(List<BlocElement> elements) {
+        int count = elements.size();
+        for (BlocElement element : elements) {
+            count += countNodes(element.children);
+        }
+        return count;
+    }
+
+    // --- Tree structure ---
+
+    private int allocate(int tagIndex, int textIndex, int idIndex) {
+        int node;
+        if (freeNode != NO_NODE) {
+            node = freeNode;
+            freeNode = nextSibling[node];
+        } else {
+            node = grow();
+        }
+        parent[node] = NO_NODE;
+        firstChild[node] = NO_NODE;
+        lastChild[node] = NO_NODE;
+        prevSibling[node] = NO_NODE;
+        nextSibling[node] = NO_NODE;
+        tag[node] = tagIndex;
+        text[node] = textIndex;
+        id[node] = idIndex;
+        styleStart[node] = 0;
+        styleCount[node] = 0;
+        attrStart[node] = 0;
+        attrCount[node] = 0;
+        return node;
+    }
+
+    private int grow() {
+        if (size == parent.length) {
+            int capacity = size + (size >> 1) + 16;
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            lastChild = Arrays.copyOf(lastChild, capacity);
+            prevSibling = Arrays.copyOf(prevSibling, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            tag = Arrays.copyOf(tag, capacity);
+            text = Arrays.copyOf(text, capacity);
+            id = Arrays.copyOf(id, capacity);
+            styleStart = Arrays.copyOf(styleStart, capacity);
+            styleCount = Arrays.copyOf(styleCount, capacity);
+            attrStart = Arrays.copyOf(attrStart, capacity);
+            attrCount = Arrays.copyOf(attrCount, capacity);
+        }
+        return size++;
+    }
+
+    private void append(int parentNode, int node) {
+        parent[node] = parentNode;
+        prevSibling[node] = lastChild[parentNode];
+        nextSibling[node] = NO_NODE;
+        if (lastChild[parentNode] != NO_NODE) {
+            nextSibling[lastChild[parentNode]] = node;
+        } else {
+            firstChild[parentNode] = node;
+        }
+        lastChild[parentNode] = node;
+    }
+
+    private void linkAt(int parentNode, int position, int node) {
+        int before = firstChild[parentNode];
+        for (int i = 0; i < position && before != NO_NODE; i++) {
+            before = nextSibling[before];
+        }
+        if (before == NO_NODE) {
+            append(parentNode, node);
+            return;
+        }
+        parent[node] = parentNode;
+        nextSibling[node] = before;
+        prevSibling[node] = prevSibling[before];
+        if (prevSibling[before] != NO_NODE) {
+            nextSibling[prevSibling[before]] = node;
+        } else {
+            firstChild[parentNode] = node;
+        }
+        prevSibling[before] = node;
+    }
+
+    private void unlink(int node) {
+        int p = parent[node];
+        if (p == NO_NODE) return;
+        if (prevSibling[node] != NO_NODE) {
+            nextSibling[prevSibling[node]] = nextSibling[node];
+        } else {
+            firstChild[p] = nextSibling[node];
+        }
+        if (nextSibling[node] != NO_NODE) {
+            prevSibling[nextSibling[node]] = prevSibling[node];
+        } else {
+            lastChild[p] = prevSibling[node];
+        }
+        parent[node] = NO_NODE;
+        prevSibling[node] = NO_NODE;
+        nextSibling[node] = NO_NODE;
+    }
+
+    /**
+     * Release a detached subtree's strings and property ranges and put its slots on the free list
+     */
+    private void free(int node) {
+        for (int child = firstChild[node], next; child != NO_NODE; child = next) {
+            next = nextSibling[child];
+            free(child);
+        }
+        if (id[node] != NO_STRING) {
+            nodeById[id[node]] = NO_NODE;
+        }
+        release(tag[node]);
+        release(text[node]);
+        release(id[node]);
+        releasePairs(styleStart[node], styleCount[node]);
+        releasePairs(attrStart[node], attrCount[node]);
+        propsGarbage += 2 * (styleCount[node] + attrCount[node]);
+        tag[node] = text[node] = id[node] = NO_STRING;
+        styleCount[node] = 0;
+        attrCount[node] = 0;
+        parent[node] = NO_NODE;
+        firstChild[node] = NO_NODE;
+        lastChild[node] = NO_NODE;
+        nextSibling[node] = freeNode;
+        freeNode = node;
+    }
+
+    private void assignId(int node, String elementId) {
+        int index = acquire(elementId);
+        id[node] = index;
+        if (index >= nodeById.length) {
+            int old = nodeById.length;
+            nodeById = Arrays.copyOf(nodeById, Math.max(index + 1, old + (old >> 1)));
+            Arrays.fill(nodeById, old, nodeById.length, NO_NODE);
+        }
+        nodeById[index] = node;
+    }
+
+    private void copyIn(int parentNode, BlocElement element) {
+        int node = allocate(acquire(element.tag), acquire(element.textContent != null ? element.textContent : ""),
+            NO_STRING);
+        assignId(node, element.elementId);
+        styleStart[node] = propsEnd;
+        styleCount[node] = appendPairs(element.styles);
+        attrStart[node] = propsEnd;
+        attrCount[node] = appendPairs(element.attributes);
+        append(parentNode, node);
+        for (BlocElement child : element.children) {
+            copyIn(node, child);
+        }
+    }
+
+    private BlocElement copyOut(int node) {
+        List<BlocElement> kids = new ArrayList<>();
+        BlocElement element = new BlocElement(string(id[node]), string(tag[node]), string(text[node]),
+            new SharedProperties(toMap(styleStart[node], styleCount[node])),
+            new SharedProperties(toMap(attrStart[node], attrCount[node])), kids);
+        for (int child = firstChild[node]; child != NO_NODE; child = nextSibling[child]) {
+            element.addChild(copyOut(child));
+        }
+        return element;
+    }
+
+    // --- Packed properties ---
+
+    private int appendPairs(Map<String, String> map) {
+        if (map == null) return 0;
+        ensureProps(propsEnd + 2 * map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            props[propsEnd++] = acquire(entry.getKey());
+            props[propsEnd++] = acquire(entry.getValue() != null ? entry.getValue() : "");
+        }
+        return map.size();
+    }
+
+    private String lookup(int start, int count, String name) {
+        Integer key = stringIndex.get(name);
+        if (key == null) return null;
+        for (int i = start, end = start + 2 * count; i < end; i += 2) {
+            if (props[i] == key) return strings[props[i + 1]];
+        }
+        return null;
+    }
+
+    private Map<String, String> toMap(int start, int count) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int i = start, end = start + 2 * count; i < end; i += 2) {
+            map.put(strings[props[i]], strings[props[i + 1]]);
+        }
+        return map;
+    }
+
+    /**
+     * Set a key in a node's range, overwriting in place or relocating the range
+     * to the end of the pool when it has to grow
+     */
+    private void putKey(int node, boolean style, String name, String value) {
+        int start = style ? styleStart[node] : attrStart[node];
+        int count = style ? styleCount[node] : attrCount[node];
+        int valueIndex = acquire(value);
+        Integer existing = stringIndex.get(name);
+        for (int i = start, end = start + 2 * count; existing != null && i < end; i += 2) {
+            if (props[i] == existing) {
+                release(props[i + 1]);
+                props[i + 1] = valueIndex;
+                return;
+            }
+        }
+        int key = acquire(name);
+        if (start + 2 * count != propsEnd) {
+            ensureProps(propsEnd + 2 * count + 2);
+            System.arraycopy(props, start, props, propsEnd, 2 * count);
+            propsGarbage += 2 * count;
+            start = propsEnd;
+            propsEnd += 2 * count;
+        } else {
+            ensureProps(propsEnd + 2);
+        }
+        props[propsEnd++] = key;
+        props[propsEnd++] = valueIndex;
+        if (style) {
+            styleStart[node] = start;
+            styleCount[node] = count + 1;
+        } else {
+            attrStart[node] = start;
+            attrCount[node] = count + 1;
+        }
+        if (propsGarbage > propsEnd / 2) {
+            compactProps();
+        }
+    }
+
+    /**
+     * Remove a key by moving the range's last pair into its slot
+     * @return the new count
+     */
+    private int removeKey(int start, int count, String name) {
+        Integer key = stringIndex.get(name);
+        if (key == null) return count;
+        for (int i = start, end = start + 2 * count; i < end; i += 2) {
+            if (props[i] == key) {
+                release(props[i]);
+                release(props[i + 1]);
+                props[i] = props[end - 2];
+                props[i + 1] = props[end - 1];
+                propsGarbage += 2;
+                return count - 1;
+            }
+        }
+        return count;
+    }
+
+    private void releasePairs(int start, int count) {
+        for (int i = start, end = start + 2 * count; i < end; i++) {
+            release(props[i]);
+        }
+    }
+
+    private void ensureProps(int capacity) {
+        if (capacity > props.length) {
+            props = Arrays.copyOf(props, Math.max(capacity, props.length + (props.length >> 1)));
+        }
+    }
+
+    /**
+     * Rewrite the pool so only live ranges remain, in node order
+     */
+    private void compactProps() {
+        int[] packed = new int[Math.max(64, propsEnd - propsGarbage + 16)];
+        int end = 0;
+        for (int node = 0; node < size; node++) {
+            System.arraycopy(props, styleStart[node], packed, end, 2 * styleCount[node]);
+            styleStart[node] = end;
+            end += 2 * styleCount[node];
+            System.arraycopy(props, attrStart[node], packed, end, 2 * attrCount[node]);
+            attrStart[node] = end;
+            end += 2 * attrCount[node];
+        }
+        props = packed;
+        propsEnd = end;
+        propsGarbage = 0;
+    }
+
+    // --- Strings ---
+
+    /**
+     * Index of value in the string table, counting one more use of it
+     */
+    private int acquire(String value) {
+        Integer existing = stringIndex.get(value);
+        int index;
+        if (existing != null) {
+            index = existing;
+        } else if (freeStringCount > 0) {
+            index = freeStrings[--freeStringCount];
+        } else {
+            if (stringCount == strings.length) {
+                strings = Arrays.copyOf(strings, stringCount + (stringCount >> 1) + 16);
+                stringRefs = Arrays.copyOf(stringRefs, strings.length);
+            }
+            index = stringCount++;
+        }
+        if (existing == null) {
+            strings[index] = value;
+            stringIndex.put(value, index);
+        }
+        stringRefs[index]++;
+        return index;
+    }
+
+    /**
+     * Drop one use of a string; the last use frees its slot for reuse
+     */
+    private void release(int index) {
+        if (index == NO_STRING || --stringRefs[index] > 0) return;
+        stringIndex.remove(strings[index]);
+        strings[index] = null;
+        if (freeStringCount == freeStrings.length) {
+            freeStrings = Arrays.copyOf(freeStrings, freeStringCount * 2);
+        }
+        freeStrings[freeStringCount++] = index;
+    }
+
+    private String string(int index) {
+        return index != NO_STRING ? strings[index] : null;
+    }
+}
@@ -0,0 +1,135 @@
+package com.blocvibe.app;
+
+import android.graphics.RectF;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * DropResolver - Turns a point on the canvas into an exact insertion point
+ * (parent and child index) using the spatial index over reported element
+ * boxes. The deepest element under the point decides: over the middle of a
+ * container the drop goes inside it, otherwise before or after the element
+ * depending on which half was hit. Also computes the insertion indicator.
+ * All coordinates are document CSS pixels. Main thread only.
+ */
+public class DropResolver {
+
+    // Top/bottom share of a container's height where a drop goes beside it rather than inside
+    private static final float EDGE_FRACTION = 0.25f;
+    private static final float INDICATOR_THICKNESS = 3f;
+
+    private static final Set<String> CONTAINER_TAGS = new HashSet<>(Arrays.asList(
+        "div", "section", "header", "footer", "main", "nav", "article", "aside",
+        "form", "ul", "ol", "li", "figure", "blockquote"
+    ));
+
+    /**
+     * Where a dragged element would land; reused between calls
+     */
+    public static class DropTarget {
+        public BlocElement parent;      // null means top level
+        public int index;               // Position among parent's current children
+        public final RectF indicator = new RectF();  // Insertion bar in document CSS pixels
+    }
+
+    private final ElementGeometry geometry;
+    private final List<String> hits = new ArrayList<>();
+    private final DropTarget target = new DropTarget();
+
+    public DropResolver(ElementGeometry geometry) {
+        this.geometry = geometry;
+    }
+
+    /**
+     * Deepest element under the point, ignoring the subtree of excludedId (may be null)
+     */
+    public BlocElement hitTest(ElementIndex index, float x, float y, String excludedId) {
+        hits.clear();
+        geometry.getSpatialIndex().queryPoint(x, y, hits);
+        BlocElement best = null;
+        int bestDepth = -1;
+        for (String id : hits) {
+            if (excludedId != null && index.isInSubtree(excludedId, id)) continue;
+            BlocElement element = index.get(id);
+            if (element == null) continue;
+            int depth = depth(index, element);
+            if (depth > bestDepth) {
+                best = element;
+                bestDepth = depth;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Resolve the insertion point for a drop at (x, y)
+     * @param draggedId element being moved, or null for a new element
+     */
+    public DropTarget resolve(ElementIndex index, float x, float y, String draggedId) {
+        BlocElement hit = hitTest(index, x, y, draggedId);
+        RectF box = hit != null ? geometry.get(hit.elementId) : null;
+
+        if (hit == null || box == null) {
+            target.parent = null;
+            target.index = indexByPosition(index.getRoots(), y);
+        } else if (CONTAINER_TAGS.contains(hit.tag)
+                && y > box.top + box.height() * EDGE_FRACTION
+                && y < box.bottom - box.height() * EDGE_FRACTION) {
+            target.parent = hit;
+            target.index = indexByPosition(hit.children, y);
+        } else {
+            target.parent = index.getParent(hit.elementId);
+            List<BlocElement> siblings = target.parent != null ? target.parent.children : index.getRoots();
+            target.index = siblings.indexOf(hit) + (y > box.centerY() ? 1 : 0);
+        }
+        placeIndicator(index);
+        return target;
+    }
+
+    /**
+     * First child whose vertical centre lies below y, or the end of the list
+     */
+    private int indexByPosition(List<BlocElement> children, float y) {
+        for (int i = 0; i < children.size(); i++) {
+            RectF box = geometry.get(children.get(i).elementId);
+            if (box != null && y < box.centerY()) {
+                return i;
+            }
+        }
+        return children.size();
+    }
+
+    private void placeIndicator(ElementIndex index) {
+        List<BlocElement> siblings = target.parent != null ? target.parent.children : index.getRoots();
+        RectF next = target.index < siblings.size() ? geometry.get(siblings.get(target.index).elementId) : null;
+        RectF previous = target.index > 0 ? geometry.get(siblings.get(target.index - 1).elementId) : null;
+        RectF parentBox = target.parent != null ? geometry.get(target.parent.elementId) : null;
+
+        if (next != null) {
+            bar(next.left, next.right, next.top);
+        } else if (previous != null) {
+            bar(previous.left, previous.right, previous.bottom);
+        } else if (parentBox != null) {
+            bar(parentBox.left, parentBox.right, parentBox.top + parentBox.height() / 2);
+        } else {
+            bar(0, geometry.getDocumentWidth(), 0);
+        }
+    }
+
+    private void bar(float left, float right, float y) {
+        float half = INDICATOR_THICKNESS / 2;
+        target.indicator.set(left, y - half, right, y + half);
+    }
+
+    private static int depth(ElementIndex index, BlocElement element) {
+        int depth = 0;
+        for (BlocElement parent = index.getParent(element.elementId); parent != null;
+             parent = index.getParent(parent.elementId)) {
+            depth++;
+        }
+        return depth;
+    }
+}
@@ -0,0 +1,209 @@
+package com.blocvibe.app;
+
+import android.os.SystemClock;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EditHistory - Undo/redo built on inverse operations. Each step keeps the
+ * EditOps of one user action together with the ops that reverse it, so a step
+ * costs the size of the edit rather than a copy of the tree. Removed subtrees
+ * are kept by reference and put back as-is, which preserves element IDs.
+ * Memory is bounded by an estimated byte budget; the oldest steps are dropped
+ * first. Main thread only.
+ */
+public class EditHistory {
+
+    public static final long DEFAULT_BUDGET_BYTES = 2 * 1024 * 1024;
+
+    // Consecutive steps with the same merge key within this window become one
+    private static final long MERGE_WINDOW_MS = 1000;
+    private static final int OP_OVERHEAD_BYTES = 64;
+    private static final int ELEMENT_OVERHEAD_BYTES = 160;
+
+    /**
+     * One undoable action
+     */
+    public static class Step {
+        final List<EditOp> forward;
+        final List<EditOp> inverse;  // Applied in reverse order
+        final String mergeKey;
+        long at;
+        long bytes;
+
+        Step(List<EditOp> forward, List<EditOp> inverse, String mergeKey) {
+            this.forward = forward;
+            this.inverse = inverse;
+            this.mergeKey = mergeKey;
+        }
+    }
+
+    private final Deque<Step> undoSteps = new ArrayDeque<>();  // Newest first
+    private final Deque<Step> redoSteps = new ArrayDeque<>();  // Next to redo first
+    private long budgetBytes;
+    private long usedBytes;
+
+    public EditHistory() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    public EditHistory(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public void setBudget(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        trim();
+    }
+
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public boolean canUndo() {
+        return !undoSteps.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoSteps.isEmpty();
+    }
+
+    /**
+     * Record an action that has already been applied; clears the redo history
+     */
+    public void push(EditOp forward, EditOp inverse) {
+        push(Collections.singletonList(forward), Collections.singletonList(inverse), null);
+    }
+
+    /**
+     * Record an action that has already been applied. A step whose mergeKey
+     * matches the previous one (e.g. typing into the same field) extends it,
+     * keeping the original inverse.
+     */
+    public void push(List<EditOp> forward, List<EditOp> inverse, String mergeKey) {
+        if (forward.isEmpty()) return;
+        clearRedo();
+        long now = SystemClock.uptimeMillis();
+        Step top = undoSteps.peekFirst();
+        if (mergeKey != null && top != null && mergeKey.equals(top.mergeKey) && now - top.at < MERGE_WINDOW_MS) {
+            usedBytes -= top.bytes;
+            Step merged = new Step(forward, top.inverse, mergeKey);
+            undoSteps.removeFirst();
+            add(merged, now);
+        } else {
+            add(new Step(forward, inverse, mergeKey), now);
+        }
+        trim();
+    }
+
+    /**
+     * Revert the newest step on the tree
+     * @return the ops that were applied (to journal and render), or null if there is nothing to undo
+     */
+    public List<EditOp> undo(ElementIndex index) {
+        Step step = undoSteps.pollFirst();
+        if (step == null) return null;
+        List<EditOp> applied = new ArrayList<>(step.inverse.size());
+        for (int i = step.inverse.size() - 1; i >= 0; i--) {
+            if (apply(step.inverse.get(i), index)) {
+                applied.add(step.inverse.get(i));
+            }
+        }
+        redoSteps.addFirst(step);
+        return applied;
+    }
+
+    /**
+     * Re-apply the most recently undone step
+     * @return the ops that were applied, or null if there is nothing to redo
+     */
+    public List<EditOp> redo(ElementIndex index) {
+        Step step = redoSteps.pollFirst();
+        if (step == null) return null;
+        List<EditOp> applied = new ArrayList<>(step.forward.size());
+        for (EditOp op : step.forward) {
+            if (apply(op, index)) {
+                applied.add(op);
+            }
+        }
+        undoSteps.addFirst(step);
+        return applied;
+    }
+
+    public void clear() {
+        undoSteps.clear();
+        redoSteps.clear();
+        usedBytes = 0;
+    }
+
+    private void add(Step step, long now) {
+        step.at = now;
+        step.bytes = estimate(step.forward) + estimate(step.inverse);
+        usedBytes += step.bytes;
+        undoSteps.addFirst(step);
+    }
+
+    private void clearRedo() {
+        for (Step step : redoSteps) {
+            usedBytes -= step.bytes;
+        }
+        redoSteps.clear();
+    }
+
+    /**
+     * Drop the oldest undo steps until the history fits the budget; the
+     * newest step is always kept
+     */
+    private void trim() {
+        while (usedBytes > budgetBytes && undoSteps.size() > 1) {
+            usedBytes -= undoSteps.removeLast().bytes;
+        }
+        while (usedBytes > budgetBytes && !redoSteps.isEmpty()) {
+            usedBytes -= redoSteps.removeLast().bytes;
+        }
+    }
+
+    private static boolean apply(EditOp op, ElementIndex index) {
+        try {
+            return op.apply(index, null);  // History inserts always hold their subtree
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static long estimate(List<EditOp> ops) {
+        long bytes = 0;
+        for (EditOp op : ops) {
+            bytes += OP_OVERHEAD_BYTES + chars(op.elementId) + chars(op.parentId)
+                + chars(op.name) + chars(op.value);
+            if (op.subtree != null) {
+                bytes += estimate(op.subtree);
+            }
+        }
+        return bytes;
+    }
+
+    private static long estimate(BlocElement element) {
+        long bytes = ELEMENT_OVERHEAD_BYTES + chars(element.elementId) + chars(element.tag)
+            + chars(element.textContent);
+        for (Map.Entry<String, String> entry : element.styles.entrySet()) {
+            bytes += chars(entry.getKey()) + chars(entry.getValue());
+        }
+        for (Map.Entry<String, String> entry : element.attributes.entrySet()) {
+            bytes += chars(entry.getKey()) + chars(entry.getValue());
+        }
+        for (BlocElement child : element.children) {
+            bytes += estimate(child);
+        }
+        return bytes;
+    }
+
+    private static long chars(String value) {
+        return value != null ? 2L * value.length() : 0;
+    }
+}
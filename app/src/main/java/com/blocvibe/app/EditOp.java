@@ -0,0 +1,193 @@
+package com.blocvibe.app;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * EditOp - One element edit in the per-project operation journal.
+ * Each edit is appended as a small row instead of rewriting the project;
+ * a checkpoint folds the journal into the element rows and truncates it.
+ * After a crash, the journal is replayed in seq order on top of the rows.
+ */
+@Entity(tableName = "edit_journal",
+        foreignKeys = @ForeignKey(entity = Project.class, parentColumns = "id",
+                                  childColumns = "project_id", onDelete = ForeignKey.CASCADE),
+        indices = {@Index("project_id")})
+public class EditOp {
+    public static final String INSERT = "insert";
+    public static final String DELETE = "delete";
+    public static final String MOVE = "move";
+    public static final String SET_STYLE = "set-style";
+    public static final String SET_ATTR = "set-attr";
+    public static final String SET_TEXT = "set-text";
+
+    @PrimaryKey(autoGenerate = true)
+    public long seq;            // Append order
+
+    @ColumnInfo(name = "project_id")
+    public long projectId;
+
+    @ColumnInfo(name = "type")
+    public String type;         // One of the constants above
+
+    @ColumnInfo(name = "element_id")
+    public String elementId;
+
+    @ColumnInfo(name = "parent_id")
+    public String parentId;     // insert/move: new parent, null means top level
+
+    @ColumnInfo(name = "position")
+    public int position;        // insert/move: index passed to ElementIndex
+
+    @ColumnInfo(name = "name")
+    public String name;         // Style property or attribute name
+
+    @ColumnInfo(name = "value")
+    public String value;        // New value (null removes); insert: subtree JSON
+
+    // insert: frozen copy serialized into value on the save executor, or
+    // (in undo history) the detached live subtree to put back
+    @Ignore
+    public BlocElement subtree;
+
+    public static EditOp insert(long projectId, String parentId, int position, BlocElement subtree) {
+        EditOp op = create(projectId, INSERT, subtree.elementId);
+        op.parentId = parentId;
+        op.position = position;
+        op.subtree = subtree;
+        return op;
+    }
+
+    public static EditOp delete(long projectId, String elementId) {
+        return create(projectId, DELETE, elementId);
+    }
+
+    public static EditOp move(long projectId, String elementId, String parentId, int position) {
+        EditOp op = create(projectId, MOVE, elementId);
+        op.parentId = parentId;
+        op.position = position;
+        return op;
+    }
+
+    /**
+     * Inverse of a move that took an element from oldParentId/oldIndex to
+     * newParentId/newIndex (indices as seen before and after the move).
+     * ElementIndex.move shifts the position down by one when moving forward
+     * within the same list, so that case asks for one slot further.
+     */
+    public static EditOp moveBack(long projectId, String elementId, String oldParentId, int oldIndex,
+                                  String newParentId, int newIndex) {
+        boolean sameList = oldParentId != null ? oldParentId.equals(newParentId) : newParentId == null;
+        return move(projectId, elementId, oldParentId, sameList && newIndex <= oldIndex ? oldIndex + 1 : oldIndex);
+    }
+
+    public static EditOp setStyle(long projectId, String elementId, String name, String value) {
+        EditOp op = create(projectId, SET_STYLE, elementId);
+        op.name = name;
+        op.value = value;
+        return op;
+    }
+
+    public static EditOp setAttribute(long projectId, String elementId, String name, String value) {
+        EditOp op = create(projectId, SET_ATTR, elementId);
+        op.name = name;
+        op.value = value;
+        return op;
+    }
+
+    public static EditOp setText(long projectId, String elementId, String value) {
+        EditOp op = create(projectId, SET_TEXT, elementId);
+        op.value = value;
+        return op;
+    }
+
+    private static EditOp create(long projectId, String type, String elementId) {
+        EditOp op = new EditOp();
+        op.projectId = projectId;
+        op.type = type;
+        op.elementId = elementId;
+        return op;
+    }
+
+    /**
+     * Copy to hand to the journal; an insert carries a frozen copy of its subtree
+     */
+    public EditOp copyForJournal() {
+        EditOp copy = create(projectId, type, elementId);
+        copy.parentId = parentId;
+        copy.position = position;
+        copy.name = name;
+        copy.value = value;
+        copy.subtree = subtree != null ? subtree.snapshot() : null;
+        return copy;
+    }
+
+    /**
+     * Fill in the stored form of an insert; call on the thread that owns the codec
+     */
+    public void encode(BlocElementTypeAdapter codec) {
+        if (subtree != null) {
+            value = codec.serializeTree(Collections.singletonList(subtree));
+            subtree = null;
+        }
+    }
+
+    /**
+     * Re-apply this edit to a tree. Edits whose target no longer exists are skipped.
+     * @param codec parses stored inserts; unused when the op still holds its subtree
+     * @return true if the tree changed
+     */
+    public boolean apply(ElementIndex index, BlocElementTypeAdapter codec) throws IOException {
+        BlocElement element = index.get(elementId);
+        BlocElement parent = parentId != null ? index.get(parentId) : null;
+        if (parentId != null && parent == null && (INSERT.equals(type) || MOVE.equals(type))) {
+            return false;
+        }
+        switch (type) {
+            case INSERT: {
+                if (element != null) return false;
+                BlocElement inserted = subtree;
+                if (inserted == null) {
+                    List<BlocElement> parsed = codec.parseTree(value);
+                    if (parsed.isEmpty()) return false;
+                    inserted = parsed.get(0);
+                }
+                index.insert(parent, position, inserted);
+                return true;
+            }
+            case DELETE:
+                return element != null && index.remove(element);
+            case MOVE:
+                return element != null && index.move(element, parent, position);
+            case SET_STYLE:
+                if (element == null) return false;
+                if (value != null) {
+                    element.setStyle(name, value);
+                } else {
+                    element.styles.remove(name);
+                }
+                return true;
+            case SET_ATTR:
+                if (element == null) return false;
+                if (value != null) {
+                    element.setAttribute(name, value);
+                } else {
+                    element.attributes.remove(name);
+                }
+                return true;
+            case SET_TEXT:
+                if (element == null) return false;
+                element.setText(value != null ? value : "");
+                return true;
+            default:
+                return false;
+        }
+    }
+}
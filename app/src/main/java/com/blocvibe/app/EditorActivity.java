@@ -2,14 +2,20 @@ package com.blocvibe.app;
 
 import android.content.ClipData;
 import android.content.Intent;
+import android.content.SharedPreferences;
+import android.graphics.PointF;
+import android.net.Uri;
 import android.os.Bundle;
-import android.text.Editable;
-import android.text.TextWatcher;
+import android.os.SystemClock;
+import android.util.Log;
 import android.view.DragEvent;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewGroup;
 import android.webkit.WebView;
+import android.widget.FrameLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.activity.result.ActivityResult;
@@ -20,19 +26,25 @@ import androidx.appcompat.app.AppCompatActivity;
 import com.blocvibe.app.databinding.ActivityEditorBinding;
 import com.google.android.material.bottomsheet.BottomSheetBehavior;
 import com.google.android.material.button.MaterialButton;
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.android.material.textfield.TextInputEditText;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 public class EditorActivity extends AppCompatActivity {
 
+    private static final String TAG = "EditorActivity";
+
+    private static final int CANVAS_RUNTIME_VERSION = 4;  // Must match BlocCanvas.VERSION
+    private static final String EXPORT_PREFS = "export";
+
     private ActivityEditorBinding binding;
     private BottomSheetBehavior<com.google.android.material.card.MaterialCardView> bottomSheetBehavior;
     private Project currentProject;
@@ -41,21 +53,49 @@ public class EditorActivity extends AppCompatActivity {
     
     // Phase 3: New structured data model fields
     private List<BlocElement> elementTree;  // Main data model
+    private ElementIndex elementIndex;      // ID -> element/parent lookup, owns structural edits
     private BlocElement currentSelectedElement;
-    private Gson gson = new Gson();
+    private final BlocElementTypeAdapter storageCodec = new BlocElementTypeAdapter();  // Executor only: load and save
+    
+    // Incremental canvas updates
+    private CanvasRenderer canvasRenderer;  // Background diff/serialize, latest request wins
+    private final CanvasBridge canvasBridge = new CanvasBridge();
+    private final HtmlSerializer exportSerializer = HtmlSerializer.forExport();
+    private CanvasShell canvasShell;
+    private WebView canvasWebView;
+    private SelectionOverlay selectionOverlay;
+    private final ElementGeometry elementGeometry = new ElementGeometry();
+    private DropResolver dropResolver;
+    private final PointF dropPoint = new PointF();
+    private float lastTouchX;
+    private float lastTouchY;
+    private long openedAt;           // Uptime at onCreate, for time-to-first-canvas
+    private boolean firstCanvasShown;
+    private boolean canvasReady;  // Runtime page is loaded and connected, renders go over the bridge
     
     private ExecutorService executorService;
+    private ExecutorService exportExecutor;  // Exports must not hold up autosave and the journal
+    private AutoSaver autoSaver;
+    private PropertyEditor propertyEditor;
+    private final EditHistory editHistory = new EditHistory();  // Undo/redo by inverse ops
+    private boolean projectLoading;
     private ActivityResultLauncher<Intent> codeEditorResultLauncher;
+    private ActivityResultLauncher<Uri> exportFolderLauncher;
+    private SiteExporter siteExporter;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        openedAt = SystemClock.uptimeMillis();
         binding = ActivityEditorBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
         // Initialize database and executor
         db = AppDatabase.getInstance(this);
         executorService = Executors.newSingleThreadExecutor();
+        autoSaver = new AutoSaver(db.elementDao(), executorService, this::snapshotProject);
+        exportExecutor = Executors.newSingleThreadExecutor();
+        siteExporter = new SiteExporter(exportExecutor);
 
         // Get project ID from intent
         currentProjectId = getIntent().getLongExtra("PROJECT_ID", -1);
@@ -71,33 +111,54 @@ public class EditorActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        // Initialize WebView with JavaScript Bridge
-        binding.canvasWebview.getSettings().setJavaScriptEnabled(true);
-        binding.canvasWebview.getSettings().setDomStorageEnabled(true);
-        binding.canvasWebview.addJavascriptInterface(new WebAppInterface(this), "AndroidBridge");
+        // Canvas WebView: usually pre-warmed with the runtime page already loaded
+        canvasShell = CanvasShell.acquire(this);
+        canvasWebView = canvasShell.getWebView();
+        binding.canvasContainer.addView(canvasWebView, new FrameLayout.LayoutParams(
+            ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        selectionOverlay = new SelectionOverlay(this);
+        selectionOverlay.attach(canvasWebView, elementGeometry);
+        binding.canvasContainer.addView(selectionOverlay, new FrameLayout.LayoutParams(
+            ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        canvasRenderer = new CanvasRenderer(new CanvasRenderer.Listener() {
+            @Override
+            public void onPatch(CanvasPatch.Batch batch) {
+                // The page answers with "patch-failed" if it drifted from the snapshot
+                canvasBridge.send("patch", batch);
+            }
 
-        // Load project data
-        db.projectDao().getProjectById(currentProjectId).observe(this, project -> {
-            if (project != null) {
-                this.currentProject = project;
-                
-                // Deserialize element tree from JSON
-                if (project.elementsJson != null && !project.elementsJson.isEmpty()) {
-                    Type listType = new TypeToken<List<BlocElement>>(){}.getType();
-                    elementTree = gson.fromJson(project.elementsJson, listType);
-                } else {
-                    elementTree = new ArrayList<>();
-                }
-                
-                if (getSupportActionBar() != null) {
-                    getSupportActionBar().setTitle(project.name);
-                }
-                renderCanvas();
+            @Override
+            public void onDocument(CanvasRenderer.Document document) {
+                canvasBridge.send("render", document);
             }
         });
+        
+        // Typed handlers for batched events coming from the canvas page
+        canvasBridge.on("select", ElementEvent.class, event -> handleElementSelection(event.id));
+        canvasBridge.on("hover", ElementEvent.class, event -> selectionOverlay.setHovered(event.id));
+        canvasBridge.on("text", ElementEvent.class, event -> handleElementTextChange(event.id, event.text));
+        canvasBridge.on("patch-failed", ElementEvent.class, event -> reloadCanvas());
+        canvasBridge.on("ready", RuntimeInfo.class, this::onCanvasRuntimeReady);
+        canvasBridge.on("rendered", ElementEvent.class, event -> onCanvasRendered());
+        canvasBridge.on("layout", ElementGeometry.LayoutReport.class, report -> {
+            elementGeometry.update(report);
+            selectionOverlay.onLayoutChanged();
+        });
+        canvasShell.setPageListener(view -> {
+            // A fresh document has an empty body; render it in full once the runtime answers
+            canvasReady = false;
+            canvasRenderer.invalidate();
+            elementGeometry.clear();
+            selectionOverlay.onLayoutChanged();
+            canvasBridge.connect(view);
+        });
 
-        // Set up drag listener on WebView
-        binding.canvasWebview.setOnDragListener(new View.OnDragListener() {
+        // Load project data once; later reloads only happen for external changes
+        loadProject();
+
+        // Drag and drop: palette components and existing elements, placed at the exact drop point
+        dropResolver = new DropResolver(elementGeometry);
+        canvasWebView.setOnDragListener(new View.OnDragListener() {
             @Override
             public boolean onDrag(View v, DragEvent event) {
                 switch (event.getAction()) {
@@ -105,7 +166,42 @@ public class EditorActivity extends AppCompatActivity {
                         return true;
                     case DragEvent.ACTION_DRAG_ENTERED:
                         return true;
-                    case DragEvent.ACTION_DROP:
+                    case DragEvent.ACTION_DRAG_LOCATION: {
+                        DropResolver.DropTarget target = resolveDrop(event);
+                        if (target != null) {
+                            selectionOverlay.showDrop(
+                                target.parent != null ? target.parent.elementId : null, target.indicator);
+                        }
+                        return true;
+                    }
+                    case DragEvent.ACTION_DRAG_EXITED:
+                    case DragEvent.ACTION_DRAG_ENDED:
+                        selectionOverlay.clearDrop();
+                        return true;
+                    case DragEvent.ACTION_DROP: {
+                        selectionOverlay.clearDrop();
+                        DropResolver.DropTarget target = resolveDrop(event);
+                        if (target == null) return true;
+
+                        if (event.getLocalState() instanceof String) {
+                            // Reorder an element dragged from the canvas itself
+                            BlocElement moved = elementIndex.get((String) event.getLocalState());
+                            if (moved == null) return true;
+                            BlocElement oldParent = elementIndex.getParent(moved.elementId);
+                            String oldParentId = oldParent != null ? oldParent.elementId : null;
+                            int oldIndex = elementIndex.getSiblings(moved.elementId).indexOf(moved);
+                            String parentId = target.parent != null ? target.parent.elementId : null;
+                            int position = target.index;
+                            if (elementIndex.move(moved, target.parent, position)) {
+                                renderCanvas();
+                                int newIndex = elementIndex.getSiblings(moved.elementId).indexOf(moved);
+                                commitEdit(EditOp.move(currentProjectId, moved.elementId, parentId, position),
+                                    EditOp.moveBack(currentProjectId, moved.elementId, oldParentId, oldIndex,
+                                        parentId, newIndex));
+                            }
+                            return true;
+                        }
+
                         ClipData clipData = event.getClipData();
                         if (clipData != null && clipData.getItemCount() > 0) {
                             String droppedHtml = clipData.getItemAt(0).getText().toString();
@@ -131,23 +227,41 @@ public class EditorActivity extends AppCompatActivity {
                                     newElement.styles.put("border", "1px solid #ccc");
                                 }
                                 
-                                // Check for nesting: add to selected element or root
-                                if (currentSelectedElement != null) {
-                                    currentSelectedElement.children.add(newElement);
-                                } else {
-                                    elementTree.add(newElement);
-                                }
+                                String parentId = target.parent != null ? target.parent.elementId : null;
+                                int position = target.index;
+                                elementIndex.insert(target.parent, position, newElement);
                                 
                                 renderCanvas();
+                                commitEdit(EditOp.insert(currentProjectId, parentId, position, newElement),
+                                    EditOp.delete(currentProjectId, newElement.elementId));
                             }
                         }
                         return true;
+                    }
                     default:
                         return true;
                 }
             }
         });
 
+        // Long press on the canvas picks up the element under the finger for reordering
+        canvasWebView.setOnTouchListener((v, event) -> {
+            if (event.getActionMasked() == MotionEvent.ACTION_DOWN) {
+                lastTouchX = event.getX();
+                lastTouchY = event.getY();
+            }
+            return false;
+        });
+        canvasWebView.setOnLongClickListener(v -> {
+            if (elementIndex == null) return false;
+            selectionOverlay.toDocument(lastTouchX, lastTouchY, dropPoint);
+            BlocElement picked = dropResolver.hitTest(elementIndex, dropPoint.x, dropPoint.y, null);
+            if (picked == null) return false;
+            handleElementSelection(picked.elementId);
+            ClipData data = ClipData.newPlainText("bloc-element", picked.elementId);
+            return v.startDragAndDrop(data, selectionOverlay.createShadow(picked.elementId), picked.elementId, 0);
+        });
+
         // Initialize Bottom Sheet - start hidden
         bottomSheetBehavior = BottomSheetBehavior.from(binding.bottomSheetPalette.getRoot());
         bottomSheetBehavior.setState(BottomSheetBehavior.STATE_HIDDEN);
@@ -184,89 +298,14 @@ public class EditorActivity extends AppCompatActivity {
         TextInputEditText editColor = propertiesView.findViewById(R.id.edit_color);
         MaterialButton backBtn = propertiesView.findViewById(R.id.back_to_palette_btn);
 
-        // Add TextWatchers for live property editing
-        editId.addTextChangedListener(new TextWatcher() {
-            @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
-            
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {}
-            
-            @Override
-            public void afterTextChanged(Editable s) {
-                if (currentSelectedElement != null) {
-                    String newId = s.toString();
-                    currentSelectedElement.attributes.put("id", newId);
-                    // Update element ID in the WebView
-                    String js = "var el = document.getElementById('" + currentSelectedElement.elementId + "');" +
-                               "if(el) { el.setAttribute('id', '" + newId + "'); }";
-                    binding.canvasWebview.evaluateJavascript(js, null);
-                }
-            }
-        });
-
-        editClass.addTextChangedListener(new TextWatcher() {
-            @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
-            
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {}
-            
-            @Override
-            public void afterTextChanged(Editable s) {
-                if (currentSelectedElement != null) {
-                    String className = s.toString();
-                    currentSelectedElement.attributes.put("class", className);
-                    // Live-update the WebView
-                    String js = "document.getElementById('" + currentSelectedElement.elementId + "').className = '" + className + "';";
-                    binding.canvasWebview.evaluateJavascript(js, null);
-                }
-            }
-        });
-
-        editWidth.addTextChangedListener(new TextWatcher() {
-            @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
-            
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {}
-            
-            @Override
-            public void afterTextChanged(Editable s) {
-                if (currentSelectedElement != null) {
-                    String width = s.toString();
-                    currentSelectedElement.styles.put("width", width);
-                    // Live-update the WebView
-                    String js = "document.getElementById('" + currentSelectedElement.elementId + "').style.width = '" + width + "';";
-                    binding.canvasWebview.evaluateJavascript(js, null);
-                }
-            }
-        });
-
-        editColor.addTextChangedListener(new TextWatcher() {
-            @Override
-            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
-            
-            @Override
-            public void onTextChanged(CharSequence s, int start, int before, int count) {}
-            
-            @Override
-            public void afterTextChanged(Editable s) {
-                if (currentSelectedElement != null) {
-                    String color = s.toString();
-                    currentSelectedElement.styles.put("color", color);
-                    // Live-update the WebView
-                    String js = "document.getElementById('" + currentSelectedElement.elementId + "').style.color = '" + color + "';";
-                    binding.canvasWebview.evaluateJavascript(js, null);
-                }
-            }
-        });
+        // Live property editing: edits are staged and committed once per frame
+        propertyEditor = new PropertyEditor(() -> currentSelectedElement, this::onPropertiesCommitted);
+        propertyEditor.bind(editId, PropertyEditor.Kind.ATTRIBUTE, "id");
+        propertyEditor.bind(editClass, PropertyEditor.Kind.ATTRIBUTE, "class");
+        propertyEditor.bind(editWidth, PropertyEditor.Kind.STYLE, "width");
+        propertyEditor.bind(editColor, PropertyEditor.Kind.STYLE, "color");
 
-        backBtn.setOnClickListener(v -> {
-            currentSelectedElement = null;
-            binding.bottomSheetPalette.editorFlipper.setDisplayedChild(0); // Show palette
-            renderCanvas(); // Re-render to remove highlight
-        });
+        backBtn.setOnClickListener(v -> handleElementSelection(null));
 
         // Register for activity result from CodeEditorActivity
         codeEditorResultLauncher = registerForActivityResult(
@@ -296,6 +335,19 @@ public class EditorActivity extends AppCompatActivity {
                 }
             }
         );
+
+        // Folder picked for site export; kept per project so re-exports are incremental
+        exportFolderLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocumentTree(),
+            uri -> {
+                if (uri == null || currentProject == null) return;
+                getContentResolver().takePersistableUriPermission(uri,
+                    Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+                getSharedPreferences(EXPORT_PREFS, MODE_PRIVATE).edit()
+                    .putString("folder_" + currentProjectId, uri.toString()).apply();
+                exportSite(SiteExporter.documentTree(getContentResolver(), uri));
+            }
+        );
     }
 
     @Override
@@ -304,6 +356,13 @@ public class EditorActivity extends AppCompatActivity {
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        menu.findItem(R.id.action_undo).setEnabled(editHistory.canUndo());
+        menu.findItem(R.id.action_redo).setEnabled(editHistory.canRedo());
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
@@ -311,11 +370,17 @@ public class EditorActivity extends AppCompatActivity {
         if (id == android.R.id.home) {
             finish();
             return true;
+        } else if (id == R.id.action_undo) {
+            undo();
+            return true;
+        } else if (id == R.id.action_redo) {
+            redo();
+            return true;
         } else if (id == R.id.action_save) {
             saveProject();
             return true;
         } else if (id == R.id.action_run) {
-            renderCanvas();
+            reloadCanvas();
             Snackbar.make(binding.getRoot(), "Preview refreshed", Snackbar.LENGTH_SHORT).show();
             return true;
         } else if (id == R.id.action_view_code) {
@@ -329,100 +394,194 @@ public class EditorActivity extends AppCompatActivity {
                 codeEditorResultLauncher.launch(intent);
             }
             return true;
+        } else if (id == R.id.action_export) {
+            exportProject();
+            return true;
         }
         
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Bring the canvas in line with the element tree, patching the loaded page
+     * when possible and falling back to a full reload otherwise
+     */
     private void renderCanvas() {
         if (elementTree == null) elementTree = new ArrayList<>();
         if (currentProject == null) return;
 
-        // 1. Build HTML from the elementTree
-        String generatedHtml = buildHtmlRecursive(elementTree);
-
-        // 2. Build the JS click-injection script
-        String jsInjectorScript = 
-            " <script>" +
-            "   document.querySelectorAll('body *').forEach(el => {" +
-            "     el.onclick = function(e) {" +
-            "       e.stopPropagation();" + // Stop click from bubbling up
-            "       AndroidBridge.onElementSelected(this.getAttribute('id'));" +
-            "     };" +
-            "   });" +
-            // Add a visual highlight for the selected element
-            "   if(window.currentSelected) {" +
-            "     var prevEl = document.getElementById(window.currentSelected);" +
-            "     if(prevEl) prevEl.style.outline = 'none';" +
-            "   }" +
-            (currentSelectedElement != null ? 
-            "   var selected = document.getElementById('" + currentSelectedElement.elementId + "');" +
-            "   if(selected) {" +
-            "     selected.style.outline = '2px dashed #0D6EFD';" + // Highlight
-            "     window.currentSelected = '" + currentSelectedElement.elementId + "';" +
-            "   }" : "") +
-            " </script>";
-
-        // 3. Combine and load
-        String fullHtml = "<html><head><style>" + currentProject.cssContent + "</style></head>" +
-                          "<body>" + generatedHtml + "</body>" + jsInjectorScript + "</html>";
-
-        binding.canvasWebview.loadDataWithBaseURL(null, fullHtml, "text/html", "UTF-8", null);
-    }
-
-    private String buildHtmlRecursive(List<BlocElement> elements) {
-        StringBuilder html = new StringBuilder();
-        for (BlocElement el : elements) {
-            // Start tag
-            html.append("<").append(el.tag);
-
-            // Add attributes (id, class, etc.)
-            for (Map.Entry<String, String> attr : el.attributes.entrySet()) {
-                html.append(" ").append(attr.getKey()).append("=\"").append(attr.getValue()).append("\"");
-            }
+        if (!canvasReady) {
+            return;  // The runtime renders everything once it reports ready
+        }
 
-            // Add inline styles
-            StringBuilder styleString = new StringBuilder();
-            for (Map.Entry<String, String> style : el.styles.entrySet()) {
-                styleString.append(style.getKey()).append(":").append(style.getValue()).append(";");
-            }
-            if (styleString.length() > 0) {
-                html.append(" style=\"").append(styleString.toString()).append("\"");
-            }
+        // Diffing and serialization happen on the renderer's worker thread
+        canvasRenderer.render(elementTree, currentProject.cssContent);
+    }
 
-            html.append(">"); // Close start tag
+    /**
+     * Replace the whole canvas content. The runtime page stays loaded; only
+     * the body markup and project stylesheet are swapped.
+     */
+    private void reloadCanvas() {
+        if (elementTree == null) elementTree = new ArrayList<>();
+        if (currentProject == null || !canvasReady) return;
 
-            // Add text content
-            if (el.textContent != null && !el.textContent.isEmpty()) {
-                html.append(el.textContent);
-            }
+        canvasRenderer.reload(elementTree, currentProject.cssContent);
+    }
 
-            // Recursively add children
-            if (!el.children.isEmpty()) {
-                html.append(buildHtmlRecursive(el.children));
-            }
+    private void onCanvasRendered() {
+        if (firstCanvasShown) return;
+        firstCanvasShown = true;
+        Log.i(TAG, "Time to first canvas: " + (SystemClock.uptimeMillis() - openedAt) + " ms ("
+            + (canvasShell.isPrewarmed() ? "warm" : "cold") + " WebView)");
+    }
 
-            // End tag
-            html.append("</").append(el.tag).append(">");
+    private void onCanvasRuntimeReady(RuntimeInfo info) {
+        if (info.version != CANVAS_RUNTIME_VERSION) {
+            Log.w(TAG, "Canvas runtime version " + info.version + ", expected " + CANVAS_RUNTIME_VERSION);
         }
-        return html.toString();
+        canvasReady = true;
+        reloadCanvas();
     }
 
     private void saveProject() {
         if (currentProject == null) return;
+        propertyEditor.flush();
         
-        // Serialize element tree to JSON
-        currentProject.elementsJson = gson.toJson(elementTree);
-        currentProject.lastModified = System.currentTimeMillis();
+        autoSaver.saveNow(written -> {
+            Snackbar.make(binding.getRoot(), "Project Saved", Snackbar.LENGTH_SHORT).show();
+        });
+    }
+    
+    /**
+     * Freeze the current editor state for AutoSaver (main thread); element rows
+     * are built on the save executor from the frozen copy
+     */
+    private Callable<AutoSaver.Snapshot> snapshotProject() {
+        if (currentProject == null || elementTree == null) return null;
         
+        Project content = AutoSaver.copyOf(currentProject);
+        List<BlocElement> frozen = BlocElement.snapshotTree(elementTree);
+        return () -> new AutoSaver.Snapshot(content,
+            ElementRecord.flatten(content.id, frozen, storageCodec));
+    }
+    
+    /**
+     * Read and parse the project on the background executor, replaying any
+     * journaled edits left by a crash, then apply it on the UI thread
+     */
+    private void loadProject() {
+        projectLoading = true;
         executorService.execute(() -> {
-            db.projectDao().updateProject(currentProject);
-            runOnUiThread(() -> {
-                Snackbar.make(binding.getRoot(), "Project Saved", Snackbar.LENGTH_SHORT).show();
-            });
+            Project project = db.projectDao().getProject(currentProjectId);
+            List<ElementRecord> records = null;
+            List<BlocElement> tree = null;
+            int journalLength = 0;
+            boolean legacy = false;
+            if (project != null) {
+                legacy = db.elementDao().getLegacyElements(currentProjectId) != null;
+                try {
+                    records = db.elementDao().getElements(currentProjectId);
+                    tree = ElementRecord.buildTree(records, storageCodec);
+                    List<EditOp> journal = db.elementDao().getJournal(currentProjectId);
+                    journalLength = journal.size();
+                    if (journalLength > 0) {
+                        replayJournal(tree, journal);
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    tree = null;
+                }
+            }
+            List<ElementRecord> loadedRecords = records;
+            List<BlocElement> loadedTree = tree;
+            int replayed = journalLength;
+            boolean unconverted = legacy;
+            runOnUiThread(() -> onProjectLoaded(project, loadedRecords, loadedTree, replayed, unconverted));
         });
     }
     
+    /**
+     * Re-apply edits journaled after the last checkpoint (executor thread)
+     */
+    private void replayJournal(List<BlocElement> tree, List<EditOp> journal) throws IOException {
+        ElementIndex index = new ElementIndex(tree);
+        int skipped = 0;
+        for (EditOp op : journal) {
+            if (!op.apply(index, storageCodec)) skipped++;
+        }
+        Log.i(TAG, "Recovered " + (journal.size() - skipped) + " journaled edits"
+            + (skipped > 0 ? " (" + skipped + " no longer applicable)" : ""));
+    }
+    
+    private void onProjectLoaded(Project project, List<ElementRecord> records, List<BlocElement> tree,
+                                 int journalLength, boolean legacy) {
+        projectLoading = false;
+        if (isDestroyed()) return;
+        if (project == null || tree == null) {
+            // Never autosave over content we could not read
+            Toast.makeText(this, "Error: Could not read project", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+        
+        boolean firstLoad = currentProject == null;
+        currentProject = project;
+        elementTree = tree;
+        elementIndex = new ElementIndex(elementTree);
+        autoSaver.setBaseline(project, records, journalLength);
+        editHistory.clear();  // Inverse ops only hold for the tree they were recorded on
+        invalidateOptionsMenu();
+        if (journalLength > 0) {
+            autoSaver.markDirty();  // Checkpoint the recovered edits
+        }
+        
+        // Keep the selection across reloads when the element still exists
+        if (currentSelectedElement != null) {
+            currentSelectedElement = elementIndex.get(currentSelectedElement.elementId);
+            if (currentSelectedElement == null) {
+                binding.bottomSheetPalette.editorFlipper.setDisplayedChild(0); // Show palette
+                showSelection();
+            }
+        }
+        
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setTitle(project.name);
+        }
+        renderCanvas();  // Patches only what changed when the canvas is already loaded
+        
+        if (firstLoad) {
+            db.projectDao().observeRevision(currentProjectId).observe(this, this::onStoredRevisionChanged);
+            if (legacy) showLegacyContentNotice();
+        }
+    }
+    
+    /**
+     * The database upgrade could not convert this project's page; its original
+     * JSON is kept in legacy_elements and nothing here overwrites it
+     */
+    private void showLegacyContentNotice() {
+        new MaterialAlertDialogBuilder(this)
+                .setTitle(R.string.legacy_content_title)
+                .setMessage(R.string.legacy_content_message)
+                .setCancelable(false)
+                .setPositiveButton(R.string.legacy_content_open, null)
+                .setNegativeButton(R.string.legacy_content_close, (dialog, which) -> finish())
+                .show();
+    }
+    
+    /**
+     * Reload only when someone other than this editor wrote the row. Our own
+     * saves are recognized by revision; unsaved local edits win over the
+     * external copy and will overwrite it on the next save.
+     */
+    private void onStoredRevisionChanged(Long revision) {
+        if (revision == null || currentProject == null || projectLoading) return;
+        long known = Math.max(currentProject.revision, autoSaver.getRevision());
+        if (revision > known && !autoSaver.isDirty()) {
+            loadProject();
+        }
+    }
+    
     /**
      * Helper method to extract tag from HTML string
      */
@@ -443,15 +602,89 @@ public class EditorActivity extends AppCompatActivity {
         return null;
     }
     
+    /**
+     * Hit-test a drag event against the element geometry, or null while no project is loaded
+     */
+    private DropResolver.DropTarget resolveDrop(DragEvent event) {
+        if (elementIndex == null) return null;
+        selectionOverlay.toDocument(event.getX(), event.getY(), dropPoint);
+        String draggedId = event.getLocalState() instanceof String ? (String) event.getLocalState() : null;
+        return dropResolver.resolve(elementIndex, dropPoint.x, dropPoint.y, draggedId);
+    }
+
     /**
      * Generate HTML from element tree for code editor
      */
     private String generateHtmlFromElements() {
-        StringBuilder html = new StringBuilder();
-        for (BlocElement element : elementTree) {
-            html.append(element.toHtml()).append("\n");
-        }
-        return html.toString();
+        return exportSerializer.render(elementTree);
+    }
+    
+    /**
+     * Ask for export options and a destination, then export the site
+     */
+    private void exportProject() {
+        if (currentProject == null) return;
+        SharedPreferences prefs = getSharedPreferences(EXPORT_PREFS, MODE_PRIVATE);
+        boolean[] checked = {prefs.getBoolean("minify", false), prefs.getBoolean("zip", false)};
+        CharSequence[] options = {getString(R.string.export_minify), getString(R.string.export_zip)};
+        String folder = prefs.getString("folder_" + currentProjectId, null);
+
+        new MaterialAlertDialogBuilder(this)
+                .setTitle(R.string.export_site)
+                .setMultiChoiceItems(options, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+                .setPositiveButton(R.string.export_app_storage, (dialog, which) -> {
+                    prefs.edit().putBoolean("minify", checked[0]).putBoolean("zip", checked[1]).apply();
+                    File dir = getExternalFilesDir("exports");
+                    if (dir == null) {
+                        Snackbar.make(binding.getRoot(), "Export failed: storage unavailable",
+                            Snackbar.LENGTH_LONG).show();
+                        return;
+                    }
+                    exportSite(SiteExporter.directory(new File(dir, exportName())));
+                })
+                .setNeutralButton(R.string.export_choose_folder, (dialog, which) -> {
+                    prefs.edit().putBoolean("minify", checked[0]).putBoolean("zip", checked[1]).apply();
+                    exportFolderLauncher.launch(folder != null ? Uri.parse(folder) : null);
+                })
+                .setNegativeButton(R.string.cancel, null)
+                .show();
+    }
+
+    /**
+     * Stream the site to target on the executor; unchanged files are not rewritten
+     */
+    private void exportSite(SiteExporter.Target target) {
+        propertyEditor.flush();
+        SharedPreferences prefs = getSharedPreferences(EXPORT_PREFS, MODE_PRIVATE);
+        SiteExporter.Options options = new SiteExporter.Options();
+        options.minify = prefs.getBoolean("minify", false);
+        options.bundleName = prefs.getBoolean("zip", false) ? exportName() + ".zip" : null;
+
+        List<BlocElement> elements = BlocElement.snapshotTree(elementTree);
+        siteExporter.export(elements, currentProject.cssContent, currentProject.jsContent, options, target,
+            new SiteExporter.Callback() {
+                @Override
+                public void onExported(SiteExporter.Result result) {
+                    if (isDestroyed()) return;  // The files are written; there is just no one to tell
+                    String message = result.written == 0
+                        ? "Export up to date in " + result.location
+                        : "Exported to " + result.location + " (" + result.written + " written, "
+                            + result.unchanged + " unchanged)";
+                    Snackbar.make(binding.getRoot(), message, Snackbar.LENGTH_LONG).show();
+                }
+
+                @Override
+                public void onExportFailed(IOException error) {
+                    Log.e(TAG, "Export failed", error);
+                    if (isDestroyed()) return;
+                    Snackbar.make(binding.getRoot(), "Export failed: " + error.getMessage(),
+                        Snackbar.LENGTH_LONG).show();
+                }
+            });
+    }
+
+    private String exportName() {
+        return currentProject.name.replaceAll("[^A-Za-z0-9._-]", "_");
     }
     
     /**
@@ -461,11 +694,11 @@ public class EditorActivity extends AppCompatActivity {
         if (elementId == null) {
             currentSelectedElement = null;
             binding.bottomSheetPalette.editorFlipper.setDisplayedChild(0); // Show palette
+            showSelection();
             return;
         }
 
-        // Find the element in our tree (needs a recursive helper function)
-        currentSelectedElement = findElementById(elementTree, elementId);
+        currentSelectedElement = elementIndex != null ? elementIndex.get(elementId) : null;
 
         if (currentSelectedElement != null) {
             // 1. Switch to properties panel
@@ -474,54 +707,149 @@ public class EditorActivity extends AppCompatActivity {
             // 2. Populate the fields (using the inflated view)
             View propertiesView = binding.bottomSheetPalette.editorFlipper.getChildAt(1);
             TextView label = propertiesView.findViewById(R.id.selected_element_label);
-            TextInputEditText editId = propertiesView.findViewById(R.id.edit_id);
-            TextInputEditText editClass = propertiesView.findViewById(R.id.edit_class);
-            TextInputEditText editWidth = propertiesView.findViewById(R.id.edit_width);
-            TextInputEditText editColor = propertiesView.findViewById(R.id.edit_color);
-
             label.setText("Editing: <" + currentSelectedElement.tag + ">");
-            editId.setText(currentSelectedElement.attributes.get("id"));
-            editClass.setText(currentSelectedElement.attributes.get("class"));
-            editWidth.setText(currentSelectedElement.styles.get("width"));
-            editColor.setText(currentSelectedElement.styles.get("color"));
+            propertyEditor.populate(currentSelectedElement);
 
-            // 3. Re-render canvas to show highlight
-            renderCanvas(); 
+            // 3. Move the overlay outline; the page itself is untouched
+            showSelection();
         }
     }
 
-    private BlocElement findElementById(List<BlocElement> elements, String id) {
-        for (BlocElement el : elements) {
-            if (el.elementId.equals(id)) {
-                return el;
-            }
-            BlocElement found = findElementById(el.children, id);
-            if (found != null) {
-                return found;
+    private void showSelection() {
+        selectionOverlay.setSelected(currentSelectedElement != null ? currentSelectedElement.elementId : null);
+    }
+
+    /**
+     * Apply one frame's worth of property edits to the canvas without a diff
+     */
+    private void onPropertiesCommitted(List<CanvasPatch> patches, List<PropertyEditor.Change> changes) {
+        List<EditOp> forward = new ArrayList<>(changes.size());
+        List<EditOp> inverse = new ArrayList<>(changes.size());
+        StringBuilder mergeKey = new StringBuilder("props");
+        for (PropertyEditor.Change change : changes) {
+            boolean style = change.kind == PropertyEditor.Kind.STYLE;
+            forward.add(style
+                ? EditOp.setStyle(currentProjectId, change.elementId, change.name, change.newValue)
+                : EditOp.setAttribute(currentProjectId, change.elementId, change.name, change.newValue));
+            inverse.add(style
+                ? EditOp.setStyle(currentProjectId, change.elementId, change.name, change.oldValue)
+                : EditOp.setAttribute(currentProjectId, change.elementId, change.name, change.oldValue));
+            mergeKey.append('|').append(change.elementId).append(':').append(change.name);
+        }
+        // Typing into one field keeps extending a single undo step
+        editHistory.push(forward, inverse, mergeKey.toString());
+        for (EditOp op : forward) {
+            autoSaver.record(op.copyForJournal());
+        }
+        invalidateOptionsMenu();
+        if (canvasReady) {
+            List<CanvasPatch> pagePatches = new ArrayList<>(patches.size());
+            for (CanvasPatch patch : patches) {
+                pagePatches.add(CanvasPatcher.forPage(patch, elementIndex.get(patch.id)));
             }
+            canvasRenderer.acknowledge(patches);
+            canvasBridge.send("patch", new CanvasPatch.Batch(pagePatches));
+        } else {
+            renderCanvas();
         }
-        return null; // Not found
     }
     
     public void handleElementTextChange(String elementId, String newText) {
-        for (BlocElement element : elementTree) {
-            BlocElement found = element.findById(elementId);
-            if (found != null) {
-                found.textContent = newText;
-                saveProject();
-                break;
+        if (elementIndex == null) return;
+        BlocElement found = elementIndex.get(elementId);
+        if (found != null) {
+            String oldText = found.textContent;
+            found.setText(newText);
+            EditOp forward = EditOp.setText(currentProjectId, elementId, newText);
+            EditOp inverse = EditOp.setText(currentProjectId, elementId, oldText);
+            editHistory.push(Collections.singletonList(forward), Collections.singletonList(inverse),
+                "text|" + elementId);
+            autoSaver.record(forward.copyForJournal());
+            invalidateOptionsMenu();
+        }
+    }
+    
+    /**
+     * Journal an edit that has already been applied to the tree and make it undoable
+     */
+    private void commitEdit(EditOp forward, EditOp inverse) {
+        editHistory.push(forward, inverse);
+        autoSaver.record(forward.copyForJournal());
+        invalidateOptionsMenu();
+    }
+    
+    private void undo() {
+        if (elementIndex == null) return;
+        propertyEditor.flush();  // Staged keystrokes become their own step first
+        onHistoryApplied(editHistory.undo(elementIndex));
+    }
+    
+    private void redo() {
+        if (elementIndex == null) return;
+        propertyEditor.flush();
+        onHistoryApplied(editHistory.redo(elementIndex));
+    }
+    
+    /**
+     * Journal the ops an undo/redo applied and patch only what they touched
+     */
+    private void onHistoryApplied(List<EditOp> applied) {
+        if (applied == null) return;
+        for (EditOp op : applied) {
+            autoSaver.record(op.copyForJournal());
+        }
+        if (currentSelectedElement != null) {
+            if (elementIndex.contains(currentSelectedElement.elementId)) {
+                propertyEditor.populate(currentSelectedElement);
+            } else {
+                handleElementSelection(null);
             }
         }
+        renderCanvas();  // Keyed diff on the renderer worker: patches, never a reload
+        invalidateOptionsMenu();
     }
     
-    public void onWebViewPageReady() {
-        // Called when WebView page is fully loaded
-        Toast.makeText(this, "Page loaded", Toast.LENGTH_SHORT).show();
+    /**
+     * Payload of element-scoped bridge events from the canvas page
+     */
+    private static class ElementEvent {
+        String id;
+        String text;
+    }
+
+    /**
+     * Sent by the canvas runtime once its end of the bridge is connected
+     */
+    private static class RuntimeInfo {
+        int version;
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (propertyEditor != null) {
+            propertyEditor.flush();
+        }
+        if (autoSaver != null) {
+            autoSaver.flush();
+        }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        executorService.shutdown();
+        canvasBridge.disconnect();
+        if (canvasRenderer != null) {
+            canvasRenderer.shutdown();
+        }
+        if (canvasShell != null) {
+            canvasShell.release();
+        }
+        if (autoSaver != null) {
+            autoSaver.close();  // Flushes pending edits before shutting the executor down
+        } else {
+            executorService.shutdown();
+        }
+        exportExecutor.shutdown();  // A running export still finishes writing its files
     }
 }
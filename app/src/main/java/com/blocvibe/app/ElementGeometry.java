@@ -0,0 +1,91 @@
+package com.blocvibe.app;
+
+import android.graphics.RectF;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ElementGeometry - Java-side cache of element bounding boxes reported by the
+ * canvas page after each layout change. Boxes are in document CSS pixels, so
+ * they stay valid while the WebView scrolls; callers apply scroll and scale.
+ * Main thread only.
+ */
+public class ElementGeometry {
+
+    /**
+     * Payload of the "layout" bridge event: ids[i] owns rects[4i .. 4i+3] (x, y, width, height)
+     */
+    public static class LayoutReport {
+        public String[] ids;
+        public float[] rects;
+        public float width;
+        public float height;
+    }
+
+    private final Map<String, RectF> boxes = new HashMap<>();
+    private float documentWidth;
+    private float documentHeight;
+    private int version;  // Bumped on every update so dependants can tell stale caches
+    private SpatialIndex spatialIndex;  // Built lazily for the current boxes
+
+    /**
+     * Replace the cached boxes with a new report
+     */
+    public void update(LayoutReport report) {
+        boxes.clear();
+        if (report.ids != null && report.rects != null) {
+            int count = Math.min(report.ids.length, report.rects.length / 4);
+            for (int i = 0; i < count; i++) {
+                float x = report.rects[4 * i];
+                float y = report.rects[4 * i + 1];
+                boxes.put(report.ids[i],
+                    new RectF(x, y, x + report.rects[4 * i + 2], y + report.rects[4 * i + 3]));
+            }
+        }
+        documentWidth = report.width;
+        documentHeight = report.height;
+        spatialIndex = null;
+        version++;
+    }
+
+    public void clear() {
+        boxes.clear();
+        documentWidth = 0;
+        documentHeight = 0;
+        spatialIndex = null;
+        version++;
+    }
+
+    /**
+     * Box of an element in document CSS pixels, or null if it is not on the page
+     */
+    public RectF get(String elementId) {
+        return elementId != null ? boxes.get(elementId) : null;
+    }
+
+    /**
+     * R-tree over the current boxes for hit testing
+     */
+    public SpatialIndex getSpatialIndex() {
+        if (spatialIndex == null) {
+            spatialIndex = new SpatialIndex(boxes);
+        }
+        return spatialIndex;
+    }
+
+    public Map<String, RectF> getAll() {
+        return boxes;
+    }
+
+    public float getDocumentWidth() {
+        return documentWidth;
+    }
+
+    public float getDocumentHeight() {
+        return documentHeight;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,200 @@
+package com.blocvibe.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ElementIndex - Constant-time lookup of elements and their parents by elementId.
+ * The index owns structural changes to the tree (add, remove, move) so the
+ * element map and parent links never drift from the actual hierarchy.
+ */
+public class ElementIndex {
+
+    private final List<BlocElement> roots;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Index an existing tree. Later structural edits must go through this index.
+     */
+    public ElementIndex(List<BlocElement> roots) {
+        this.roots = roots;
+        for (BlocElement root : roots) {
+            indexSubtree(root, null);
+        }
+    }
+
+    public List<BlocElement> getRoots() {
+        return roots;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean contains(String elementId) {
+        return entries.containsKey(elementId);
+    }
+
+    /**
+     * Find an element by its ID, or null if it is not in the tree
+     */
+    public BlocElement get(String elementId) {
+        Entry entry = elementId != null ? entries.get(elementId) : null;
+        return entry != null ? entry.element : null;
+    }
+
+    /**
+     * Parent of an element, or null for top-level elements and unknown IDs
+     */
+    public BlocElement getParent(String elementId) {
+        Entry entry = elementId != null ? entries.get(elementId) : null;
+        return entry != null ? entry.parent : null;
+    }
+
+    /**
+     * The sibling list an element lives in (its parent's children or the roots)
+     */
+    public List<BlocElement> getSiblings(String elementId) {
+        BlocElement parent = getParent(elementId);
+        return parent != null ? parent.children : roots;
+    }
+
+    /**
+     * Elements from the given one up to its top-level ancestor, inclusive
+     */
+    public List<BlocElement> pathToRoot(String elementId) {
+        List<BlocElement> path = new ArrayList<>();
+        Entry entry = elementId != null ? entries.get(elementId) : null;
+        while (entry != null) {
+            path.add(entry.element);
+            entry = entry.parent != null ? entries.get(entry.parent.elementId) : null;
+        }
+        return path;
+    }
+
+    /**
+     * Elements from the top-level ancestor down to the given one
+     */
+    public List<BlocElement> pathFromRoot(String elementId) {
+        List<BlocElement> path = pathToRoot(elementId);
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Whether candidate is the element itself or one of its descendants
+     */
+    public boolean isInSubtree(String ancestorId, String candidateId) {
+        Entry entry = candidateId != null ? entries.get(candidateId) : null;
+        while (entry != null) {
+            if (entry.element.elementId.equals(ancestorId)) return true;
+            entry = entry.parent != null ? entries.get(entry.parent.elementId) : null;
+        }
+        return false;
+    }
+
+    /**
+     * Append an element (and its subtree) under parent, or at top level if parent is null
+     */
+    public void add(BlocElement parent, BlocElement element) {
+        insert(parent, getChildList(parent).size(), element);
+    }
+
+    /**
+     * Insert an element (and its subtree) at a position under parent
+     */
+    public void insert(BlocElement parent, int position, BlocElement element) {
+        List<BlocElement> siblings = getChildList(parent);
+        siblings.add(Math.max(0, Math.min(position, siblings.size())), element);
+        indexSubtree(element, parent);
+        element.markDirty();
+    }
+
+    /**
+     * Remove an element and its subtree from the tree and the index
+     * @return true if the element was in the tree
+     */
+    public boolean remove(BlocElement element) {
+        Entry entry = entries.get(element.elementId);
+        if (entry == null) return false;
+        getChildList(entry.parent).remove(entry.element);
+        unindexSubtree(entry.element);
+        if (entry.parent != null) entry.parent.markDirty();
+        entry.element.parentId = null;
+        entry.element.parent = null;
+        return true;
+    }
+
+    /**
+     * Move an element to a new parent/position, keeping its subtree indexed.
+     * Moving an element into its own subtree is rejected.
+     * @return true if the element was moved
+     */
+    public boolean move(BlocElement element, BlocElement newParent, int position) {
+        Entry entry = entries.get(element.elementId);
+        if (entry == null) return false;
+        if (newParent != null && isInSubtree(element.elementId, newParent.elementId)) return false;
+
+        List<BlocElement> from = getChildList(entry.parent);
+        List<BlocElement> to = getChildList(newParent);
+        int oldPosition = from.indexOf(element);
+        from.remove(oldPosition);
+        if (from == to && oldPosition < position) position--;
+        to.add(Math.max(0, Math.min(position, to.size())), element);
+
+        if (entry.parent != null) entry.parent.markDirty();
+        entry.parent = newParent;
+        element.parentId = newParent != null ? newParent.elementId : null;
+        element.parent = newParent;
+        element.markDirty();
+        return true;
+    }
+
+    /**
+     * Deep-copy an element (new IDs) and insert the copy right after the original
+     */
+    public BlocElement duplicate(BlocElement element) {
+        Entry entry = entries.get(element.elementId);
+        if (entry == null) return null;
+        BlocElement copy = element.clone();
+        List<BlocElement> siblings = getChildList(entry.parent);
+        insert(entry.parent, siblings.indexOf(element) + 1, copy);
+        return copy;
+    }
+
+    private List<BlocElement> getChildList(BlocElement parent) {
+        return parent != null ? parent.children : roots;
+    }
+
+    private void indexSubtree(BlocElement element, BlocElement parent) {
+        element.parentId = parent != null ? parent.elementId : null;
+        element.parent = parent;
+        entries.put(element.elementId, new Entry(element, parent));
+        for (BlocElement child : element.children) {
+            indexSubtree(child, element);
+        }
+    }
+
+    private void unindexSubtree(BlocElement element) {
+        entries.remove(element.elementId);
+        for (BlocElement child : element.children) {
+            unindexSubtree(child);
+        }
+    }
+
+    /**
+     * Node and parent reference for one element
+     */
+    private static class Entry {
+        final BlocElement element;
+        BlocElement parent;
+
+        Entry(BlocElement element, BlocElement parent) {
+            this.element = element;
+            this.parent = parent;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.blocvibe.app;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * ElementRecord - One BlocElement stored as a row of the elements table.
+ * The tree is kept as parent_id plus sibling position; styles and attributes
+ * are small JSON objects. Rows are compared field by field so a save only
+ * writes the elements that actually changed.
+ */
+@Entity(tableName = "elements",
+        primaryKeys = {"project_id", "element_id"},
+        foreignKeys = @ForeignKey(entity = Project.class, parentColumns = "id",
+                                  childColumns = "project_id", onDelete = ForeignKey.CASCADE),
+        indices = {@Index({"project_id", "parent_id", "position"})})
+public class ElementRecord {
+    @ColumnInfo(name = "project_id")
+    public long projectId;
+
+    @NonNull
+    @ColumnInfo(name = "element_id")
+    public String elementId = "";
+
+    @ColumnInfo(name = "parent_id")
+    public String parentId;     // null for top-level elements
+
+    @ColumnInfo(name = "position")
+    public int position;        // Index among the parent's children
+
+    @ColumnInfo(name = "tag")
+    public String tag;
+
+    @ColumnInfo(name = "text")
+    public String text;
+
+    @ColumnInfo(name = "styles")
+    public String styles;       // JSON object, null when empty
+
+    @ColumnInfo(name = "attributes")
+    public String attributes;   // JSON object, null when empty
+
+    /**
+     * UTF-8 size of the stored content, for the project byte_size column
+     */
+    public long byteSize() {
+        return Project.utf8Length(tag) + Project.utf8Length(text)
+            + Project.utf8Length(styles) + Project.utf8Length(attributes);
+    }
+
+    /**
+     * Same stored content and position (the project is assumed equal)
+     */
+    public boolean sameContent(ElementRecord other) {
+        return position == other.position
+            && elementId.equals(other.elementId)
+            && Objects.equals(parentId, other.parentId)
+            && Objects.equals(tag, other.tag)
+            && Objects.equals(text, other.text)
+            && Objects.equals(styles, other.styles)
+            && Objects.equals(attributes, other.attributes);
+    }
+
+    /**
+     * Flatten a tree into rows in depth-first order
+     */
+    public static List<ElementRecord> flatten(long projectId, List<BlocElement> roots, BlocElementTypeAdapter codec) {
+        List<ElementRecord> records = new ArrayList<>();
+        flatten(projectId, null, roots, codec, new IdentityHashMap<>(), records);
+        return records;
+    }
+
+    /**
+     * @param json serialized form of each shared map, so repeated style blocks are encoded once
+     */
+    private static void flatten(long projectId, String parentId, List<BlocElement> elements,
+                                BlocElementTypeAdapter codec, Map<PropertyMap, String> json,
+                                List<ElementRecord> out) {
+        for (int i = 0; i < elements.size(); i++) {
+            BlocElement element = elements.get(i);
+            ElementRecord record = new ElementRecord();
+            record.projectId = projectId;
+            record.elementId = element.elementId;
+            record.parentId = parentId;
+            record.position = i;
+            record.tag = element.tag;
+            record.text = element.textContent;
+            record.styles = serialize(element.styles, codec, json);
+            record.attributes = serialize(element.attributes, codec, json);
+            out.add(record);
+            flatten(projectId, element.elementId, element.children, codec, json, out);
+        }
+    }
+
+    private static String serialize(Map<String, String> map, BlocElementTypeAdapter codec,
+                                    Map<PropertyMap, String> json) {
+        PropertyMap shared = PropertyMap.of(map);
+        if (shared.isEmpty()) return null;
+        String value = json.get(shared);
+        if (value == null) {
+            value = codec.serializeMap(shared);
+            json.put(shared, value);
+        }
+        return value;
+    }
+
+    /**
+     * Rebuild the tree from rows in any order. Rows whose parent is missing
+     * are kept at top level so no content is lost.
+     */
+    public static List<BlocElement> buildTree(List<ElementRecord> records, BlocElementTypeAdapter codec)
+            throws IOException {
+        Map<String, BlocElement> byId = new HashMap<>(records.size() * 2);
+        Map<String, PropertyMap> parsed = new HashMap<>();  // Repeated style blocks are parsed once
+        for (ElementRecord record : records) {
+            byId.put(record.elementId, new BlocElement(record.elementId, record.tag,
+                record.text != null ? record.text : "",
+                new SharedProperties(parse(record.styles, codec, parsed)),
+                new SharedProperties(parse(record.attributes, codec, parsed)), new ArrayList<>()));
+        }
+
+        List<ElementRecord> ordered = new ArrayList<>(records);
+        Collections.sort(ordered, (a, b) -> Integer.compare(a.position, b.position));
+        List<BlocElement> roots = new ArrayList<>();
+        for (ElementRecord record : ordered) {
+            BlocElement element = byId.get(record.elementId);
+            BlocElement parent = record.parentId != null ? byId.get(record.parentId) : null;
+            if (parent != null) {
+                parent.addChild(element);
+            } else {
+                roots.add(element);
+            }
+        }
+        return roots;
+    }
+
+    private static PropertyMap parse(String json, BlocElementTypeAdapter codec, Map<String, PropertyMap> parsed)
+            throws IOException {
+        if (json == null || json.isEmpty()) return PropertyMap.EMPTY;
+        PropertyMap map = parsed.get(json);
+        if (map == null) {
+            map = codec.parseMap(json).shared();
+            parsed.put(json, map);
+        }
+        return map;
+    }
+}
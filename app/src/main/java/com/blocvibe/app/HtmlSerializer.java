@@ -0,0 +1,340 @@
+package com.blocvibe.app;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HtmlSerializer - Writes a BlocElement tree as HTML in a single pass.
+ * Every element is appended straight to the target Appendable, so nested
+ * subtrees are never materialized as intermediate strings. The same
+ * serializer backs the canvas, the code view and file export. The canvas
+ * and exported pages reference StyleClasses rules instead of repeating
+ * inline style attributes; the code view keeps styles inline.
+ * Subtree markup rendered to a String is memoized per element version (see
+ * BlocElement.markDirty), so after an edit only the changed subtree and its
+ * ancestors are written again; clean siblings are copied from the cache.
+ * Instances reuse an internal buffer and are not thread-safe.
+ */
+public class HtmlSerializer {
+
+    private static final Set<String> VOID_TAGS = new HashSet<>(Arrays.asList(
+        "area", "base", "br", "col", "embed", "hr", "img", "input",
+        "link", "meta", "source", "track", "wbr"
+    ));
+
+    private static final int DEFAULT_CACHE_CHARS = 2 * 1024 * 1024;  // ~4 MB of fragments
+    private static final int MAX_FRAGMENT_CHARS = 16 * 1024;
+
+    private final boolean editorIds;      // Emit data-bloc-id for the canvas runtime
+    private final String rootSeparator;   // Written after each top-level element
+    private final boolean styleClasses;   // render() writes generated classes, not inline styles
+    private final StringBuilder buffer = new StringBuilder();  // Reused by render()
+    private final FragmentCache cache = new FragmentCache(DEFAULT_CACHE_CHARS);
+
+    private HtmlSerializer(boolean editorIds, String rootSeparator, boolean styleClasses) {
+        this.editorIds = editorIds;
+        this.rootSeparator = rootSeparator;
+        this.styleClasses = styleClasses;
+    }
+
+    /**
+     * Serializer for the editor canvas: compact output tagged with data-bloc-id,
+     * styles as generated classes (see StyleClasses)
+     */
+    public static HtmlSerializer forCanvas() {
+        return new HtmlSerializer(true, "", true);
+    }
+
+    /**
+     * Serializer for code view and export: clean markup, one root element per line.
+     * Fragments keep inline styles; writeSitePage() uses generated classes instead.
+     */
+    public static HtmlSerializer forExport() {
+        return new HtmlSerializer(false, "\n", false);
+    }
+
+    /**
+     * Serializer for minified site export: no whitespace between elements,
+     * exactly as the canvas lays them out
+     */
+    public static HtmlSerializer forMinifiedExport() {
+        return new HtmlSerializer(false, "", false);
+    }
+
+    /**
+     * Bound the memoized markup, in chars; 0 turns memoization off
+     */
+    public void setCacheBudget(int chars) {
+        cache.setBudget(chars);
+    }
+
+    /**
+     * Drop the memoized markup of elements that left the document
+     */
+    public void evict(Collection<String> elementIds) {
+        for (String id : elementIds) {
+            cache.evict(id);
+        }
+    }
+
+    /**
+     * Render elements to a String, reusing this serializer's buffer
+     */
+    public String render(List<BlocElement> elements) {
+        buffer.setLength(0);
+        try {
+            writeElements(elements, buffer);
+        } catch (IOException e) {
+            throw new AssertionError(e);  // StringBuilder never throws
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Render a single element subtree to a String
+     */
+    public String render(BlocElement element) {
+        buffer.setLength(0);
+        try {
+            write(element, buffer, styleClasses);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Write a list of top-level elements
+     */
+    public void writeElements(List<BlocElement> elements, Appendable out) throws IOException {
+        writeElements(elements, out, styleClasses);
+    }
+
+    /**
+     * Write one element and its children
+     */
+    public void writeElement(BlocElement el, Appendable out) throws IOException {
+        write(el, out, styleClasses);
+    }
+
+    private void writeElements(List<BlocElement> elements, Appendable out, boolean classes)
+            throws IOException {
+        for (BlocElement el : elements) {
+            write(el, out, classes);
+            out.append(rootSeparator);
+        }
+    }
+
+    private void write(BlocElement el, Appendable out, boolean classes) throws IOException {
+        // Memoize only the fragments render() produces, which all use the default style mode
+        if (classes != styleClasses || !(out instanceof StringBuilder) || cache.budget == 0) {
+            writeMarkup(el, out, classes);
+            return;
+        }
+        StringBuilder target = (StringBuilder) out;
+        String cached = cache.get(el);
+        if (cached != null) {
+            target.append(cached);
+            return;
+        }
+        int start = target.length();
+        writeMarkup(el, target, classes);
+        cache.put(el, target, start);
+    }
+
+    private void writeMarkup(BlocElement el, Appendable out, boolean classes) throws IOException {
+        // Start tag
+        out.append('<').append(el.tag);
+        if (editorIds) {
+            writeAttribute("data-bloc-id", el.elementId, out);
+        }
+
+        // Attributes (id, class, etc.); with generated classes the style class joins the user's
+        for (Map.Entry<String, String> attr : el.attributes.entrySet()) {
+            if (classes && "class".equals(attr.getKey())) continue;
+            writeAttribute(attr.getKey(), attr.getValue(), out);
+        }
+        if (classes) {
+            String classAttribute = StyleClasses.classAttribute(el.attributes.get("class"), el.styles);
+            if (classAttribute != null) writeAttribute("class", classAttribute, out);
+        }
+
+        // Inline styles
+        if (!classes && !el.styles.isEmpty()) {
+            out.append(" style=\"");
+            boolean first = true;
+            for (Map.Entry<String, String> style : el.styles.entrySet()) {
+                if (!first) out.append(' ');
+                first = false;
+                escape(style.getKey(), true, out);
+                out.append(": ");
+                escape(style.getValue(), true, out);
+                out.append(';');
+            }
+            out.append('"');
+        }
+        out.append('>');
+
+        if (VOID_TAGS.contains(el.tag)) {
+            return;  // No content or end tag allowed
+        }
+
+        // Text content, then children
+        if (el.textContent != null && !el.textContent.isEmpty()) {
+            escape(el.textContent, false, out);
+        }
+        for (BlocElement child : el.children) {
+            write(child, out, classes);
+        }
+
+        // End tag
+        out.append("</").append(el.tag).append('>');
+    }
+
+    /**
+     * Write the index page of a static site that links its stylesheet and
+     * script as separate files. Styles are written as generated classes;
+     * their rules belong in the stylesheet (see StyleClasses.writeRules).
+     */
+    public void writeSitePage(List<BlocElement> elements, String stylesheet, String script, Appendable out)
+            throws IOException {
+        String nl = rootSeparator;  // Empty when minifying
+        out.append("<!DOCTYPE html>").append(nl).append("<html>").append(nl).append("<head>").append(nl)
+           .append("<meta charset=\"UTF-8\">").append(nl)
+           .append("<meta name=\"viewport\" content=\"width=device-width, initial-scale=1\">").append(nl)
+           .append("<link rel=\"stylesheet\"");
+        writeAttribute("href", stylesheet, out);
+        out.append('>').append(nl).append("</head>").append(nl).append("<body>").append(nl);
+        writeElements(elements, out, true);
+        out.append("<script");
+        writeAttribute("src", script, out);
+        out.append("></script>").append(nl).append("</body>").append(nl).append("</html>").append(nl);
+    }
+
+    /**
+     * LRU of rendered subtrees keyed by element ID. An entry holds its live
+     * element only weakly and matches only that element at that version, so
+     * a snapshot and its source share entries, a new version replaces the
+     * old one in place, and an element re-created under the same ID (undo)
+     * never sees stale markup. Entries of collected elements are dropped on
+     * the next access. Leaves are cheap to write and not stored, and larger
+     * subtrees are rebuilt from their cached children rather than stored, so
+     * each char of the page is held about once: an edit re-renders its
+     * ancestors from their children, costing O(depth + changed subtree)
+     * element writes plus copying the cached chunks.
+     */
+    private static class FragmentCache extends LinkedHashMap<String, FragmentCache.Entry> {
+        private static final int ENTRY_CHARS = 48;  // Map node, entry and reference, counted against the budget
+
+        int budget;
+        private long used;
+        private final ReferenceQueue<BlocElement> collected = new ReferenceQueue<>();
+
+        static class Entry extends WeakReference<BlocElement> {
+            final String elementId;
+            final int version;
+            final String html;
+
+            Entry(BlocElement el, String elementId, int version, String html, ReferenceQueue<BlocElement> queue) {
+                super(el, queue);
+                this.elementId = elementId;
+                this.version = version;
+                this.html = html;
+            }
+        }
+
+        FragmentCache(int budget) {
+            super(256, 0.75f, true);  // Access order
+            this.budget = budget;
+        }
+
+        void setBudget(int chars) {
+            budget = Math.max(0, chars);
+            trim();
+        }
+
+        String get(BlocElement el) {
+            expunge();
+            Entry entry = super.get(el.elementId);
+            return entry != null && entry.get() == key(el) && entry.version == el.version ? entry.html : null;
+        }
+
+        void put(BlocElement el, StringBuilder rendered, int start) {
+            int length = rendered.length() - start;
+            if (el.children.isEmpty() || length > Math.min(MAX_FRAGMENT_CHARS, budget / 4)) return;
+            Entry old = super.put(el.elementId,
+                new Entry(key(el), el.elementId, el.version, rendered.substring(start), collected));
+            used += length + ENTRY_CHARS - (old != null ? old.html.length() + ENTRY_CHARS : 0);
+            trim();
+        }
+
+        void evict(String elementId) {
+            Entry old = super.remove(elementId);
+            if (old != null) used -= old.html.length() + ENTRY_CHARS;
+        }
+
+        private static BlocElement key(BlocElement el) {
+            return el.source != null ? el.source : el;
+        }
+
+        private void expunge() {
+            for (Reference<? extends BlocElement> ref; (ref = collected.poll()) != null; ) {
+                Entry entry = (Entry) ref;
+                if (super.get(entry.elementId) == entry) evict(entry.elementId);
+            }
+        }
+
+        private void trim() {
+            Iterator<Entry> eldest = values().iterator();
+            while (used > budget && eldest.hasNext()) {
+                Entry entry = eldest.next();
+                used -= entry.html.length() + ENTRY_CHARS;
+                eldest.remove();
+            }
+        }
+    }
+
+    private static void writeAttribute(String name, String value, Appendable out) throws IOException {
+        out.append(' ').append(name);
+        if (value != null) {
+            out.append("=\"");
+            escape(value, true, out);
+            out.append('"');
+        }
+    }
+
+    /**
+     * Append text with HTML special characters escaped. Unescaped runs are
+     * copied as ranges so the common case costs one append per value.
+     */
+    static void escape(String value, boolean attribute, Appendable out) throws IOException {
+        if (value == null) return;
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            String entity;
+            switch (value.charAt(i)) {
+                case '&': entity = "&amp;"; break;
+                case '<': entity = "&lt;"; break;
+                case '>': entity = "&gt;"; break;
+                case '"': entity = attribute ? "&quot;" : null; break;
+                default: entity = null;
+            }
+            if (entity != null) {
+                out.append(value, start, i).append(entity);
+                start = i + 1;
+            }
+        }
+        out.append(value, start, length);
+    }
+}
@@ -0,0 +1,24 @@
+package com.blocvibe.app;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+/**
+ * LegacyElements - The original elements_json of a project whose page could
+ * not be split into element rows when the database moved to per-element
+ * storage. Kept verbatim so the content is never lost; the editor warns
+ * before opening such a project and never writes this row.
+ */
+@Entity(tableName = "legacy_elements",
+        foreignKeys = @ForeignKey(entity = Project.class, parentColumns = "id",
+                                  childColumns = "project_id", onDelete = ForeignKey.CASCADE))
+public class LegacyElements {
+    @PrimaryKey
+    @ColumnInfo(name = "project_id")
+    public long projectId;
+
+    @ColumnInfo(name = "elements_json")
+    public String elementsJson;
+}
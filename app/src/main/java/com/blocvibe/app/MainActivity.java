@@ -1,17 +1,33 @@
 package com.blocvibe.app;
 
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.EditText;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.lifecycle.Observer;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.room.InvalidationTracker;
 import com.blocvibe.app.databinding.ActivityMainBinding;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.List;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -21,6 +37,22 @@ public class MainActivity extends AppCompatActivity {
     private ProjectAdapter adapter;
     private AppDatabase db;
     private ExecutorService executorService;
+    private ExecutorService archiveExecutor;  // Backups must not hold up the project list
+    private ProjectPager projectPager;
+    private InvalidationTracker.Observer projectsObserver;
+    private ActivityResultLauncher<String> backupLauncher;
+    private ActivityResultLauncher<String[]> restoreLauncher;
+    
+    // Advances the shared relative-time labels once per minute
+    private final BroadcastReceiver timeTickReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            RelativeTimeFormatter.getInstance().tick();
+        }
+    };
+    
+    // Start loading the next page when this close to the end of the list
+    private static final int PREFETCH_DISTANCE = 10;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -28,38 +60,78 @@ public class MainActivity extends AppCompatActivity {
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
+        // No-op if the splash already warmed a canvas WebView
+        CanvasShell.prewarm(this);
+
         // Set up toolbar
         setSupportActionBar(binding.mainToolbar);
 
         // Initialize database and executor
         db = AppDatabase.getInstance(this);
         executorService = Executors.newSingleThreadExecutor();
+        archiveExecutor = Executors.newSingleThreadExecutor();
 
         // Set up RecyclerView
         adapter = new ProjectAdapter(new ArrayList<>(), new ProjectAdapter.OnProjectClickListener() {
             @Override
-            public void onProjectClick(Project project) {
+            public void onProjectClick(ProjectSummary project) {
                 openEditor(project.id);
             }
 
             @Override
-            public void onProjectMenuClick(Project project) {
+            public void onProjectMenuClick(ProjectSummary project) {
                 Toast.makeText(MainActivity.this, "Menu for: " + project.getName(), 
                         Toast.LENGTH_SHORT).show();
             }
         });
         binding.projectsRecyclerView.setAdapter(adapter);
 
-        // Observe projects from database
-        db.projectDao().getAllProjects().observe(this, new Observer<List<Project>>() {
+        // Page project summaries into the list as the user scrolls
+        projectPager = new ProjectPager(db.projectDao(), executorService, adapter::updateProjects);
+        binding.projectsRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
-            public void onChanged(List<Project> projects) {
-                adapter.updateProjects(projects);
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    projectPager.loadNextPage();
+                }
             }
         });
+        projectPager.loadNextPage();
+        
+        // Reload the visible range whenever the projects table changes
+        projectsObserver = new InvalidationTracker.Observer("projects") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                runOnUiThread(() -> projectPager.refresh());
+            }
+        };
+        db.getInvalidationTracker().addObserver(projectsObserver);
 
         // Set up FAB
         binding.fabNewProject.setOnClickListener(v -> showNewProjectDialog());
+
+        // Bulk backup and restore through .blocvibe archives
+        backupLauncher = registerForActivityResult(
+            new ActivityResultContracts.CreateDocument(ProjectArchive.MIME_TYPE),
+            uri -> { if (uri != null) backupProjects(uri); });
+        restoreLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(),
+            uri -> { if (uri != null) restoreProjects(uri); });
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        RelativeTimeFormatter.getInstance().tick();  // Catch up on time spent in the background
+        registerReceiver(timeTickReceiver, new IntentFilter(Intent.ACTION_TIME_TICK));
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        unregisterReceiver(timeTickReceiver);
     }
 
     @Override
@@ -73,10 +145,51 @@ public class MainActivity extends AppCompatActivity {
         if (item.getItemId() == R.id.action_settings) {
             Toast.makeText(this, "Settings clicked", Toast.LENGTH_SHORT).show();
             return true;
+        } else if (item.getItemId() == R.id.action_backup) {
+            String date = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
+            backupLauncher.launch("blocvibe-backup-" + date + ProjectArchive.EXTENSION);
+            return true;
+        } else if (item.getItemId() == R.id.action_restore) {
+            // Providers that type files by extension report .blocvibe as octet-stream
+            restoreLauncher.launch(new String[] {ProjectArchive.MIME_TYPE, "application/zip",
+                "application/octet-stream"});
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
+    private void backupProjects(Uri uri) {
+        Toast.makeText(this, R.string.backup_started, Toast.LENGTH_SHORT).show();
+        archiveExecutor.execute(() -> {
+            try (OutputStream out = getContentResolver().openOutputStream(uri)) {
+                if (out == null) throw new IOException("Cannot open " + uri);
+                ProjectArchive.Stats stats = new ProjectArchive(db.projectDao(), db.elementDao()).exportAll(out);
+                showArchiveResult(getString(R.string.backup_done, stats));
+            } catch (IOException | RuntimeException e) {
+                Log.e("MainActivity", "Backup failed", e);
+                showArchiveResult(getString(R.string.backup_failed, e.getMessage()));
+            }
+        });
+    }
+
+    private void restoreProjects(Uri uri) {
+        Toast.makeText(this, R.string.restore_started, Toast.LENGTH_SHORT).show();
+        archiveExecutor.execute(() -> {
+            try (InputStream in = getContentResolver().openInputStream(uri)) {
+                if (in == null) throw new IOException("Cannot open " + uri);
+                ProjectArchive.Stats stats = new ProjectArchive(db.projectDao(), db.elementDao()).importAll(in);
+                showArchiveResult(getString(R.string.restore_done, stats));
+            } catch (IOException | RuntimeException e) {
+                Log.e("MainActivity", "Restore failed", e);
+                showArchiveResult(getString(R.string.restore_failed, e.getMessage()));
+            }
+        });
+    }
+
+    private void showArchiveResult(String message) {
+        runOnUiThread(() -> Toast.makeText(this, message, Toast.LENGTH_LONG).show());
+    }
+
     private void showNewProjectDialog() {
         EditText input = new EditText(this);
         input.setHint(R.string.enter_project_name);
@@ -102,11 +215,11 @@ public class MainActivity extends AppCompatActivity {
         executorService.execute(() -> {
             Project newProject = new Project();
             newProject.name = projectName;
-            // Initialize with empty element tree as JSON
-            newProject.elementsJson = "[]";  
+            // Starts without elements; rows are added as the user builds the page
             newProject.cssContent = "/* Add your CSS here */";
             newProject.jsContent = "// Add your JavaScript here";
             newProject.lastModified = System.currentTimeMillis();
+            newProject.updateStats(0, 0);
             
             long newProjectId = db.projectDao().insertProject(newProject);
             
@@ -123,6 +236,8 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        db.getInvalidationTracker().removeObserver(projectsObserver);
         executorService.shutdown();
+        archiveExecutor.shutdown();  // A running backup or restore still finishes
     }
 }
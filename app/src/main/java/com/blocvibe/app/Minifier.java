@@ -0,0 +1,187 @@
+package com.blocvibe.app;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Minifier - Conservative CSS and JavaScript minification for site export.
+ * Strings, template literals and regular expressions are copied untouched.
+ * JavaScript keeps its line breaks so automatic semicolon insertion still
+ * sees the same statements; only comments, indentation and blank lines go.
+ */
+public final class Minifier {
+
+    // After these a '/' starts a regular expression rather than a division
+    private static final String REGEX_PRECEDERS = "(,=:[!&|?{};+-*%<>~^";
+    private static final Set<String> REGEX_KEYWORDS = new HashSet<>(Arrays.asList(
+        "return", "typeof", "case", "do", "else", "in", "of", "new", "delete",
+        "void", "throw", "instanceof", "yield", "await"
+    ));
+
+    // CSS whitespace can go after these, and before all but ':' (selectors like "a :hover")
+    private static final String CSS_TIGHT_AFTER = "{};,>:";
+    private static final String CSS_TIGHT_BEFORE = "{};,>";
+
+    private Minifier() {
+    }
+
+    /**
+     * Strip comments and collapse whitespace around punctuation
+     */
+    public static String css(String css) {
+        if (css == null) return "";
+        StringBuilder out = new StringBuilder(css.length());
+        int n = css.length();
+        boolean space = false;
+        for (int i = 0; i < n; i++) {
+            char c = css.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (c == '/' && i + 1 < n && css.charAt(i + 1) == '*') {
+                int end = css.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 1;
+                space = true;
+                continue;
+            }
+            if (space) {
+                char last = out.length() > 0 ? out.charAt(out.length() - 1) : '{';
+                if (CSS_TIGHT_AFTER.indexOf(last) < 0 && CSS_TIGHT_BEFORE.indexOf(c) < 0) {
+                    out.append(' ');
+                }
+                space = false;
+            }
+            if (c == '}' && out.length() > 0 && out.charAt(out.length() - 1) == ';') {
+                out.setLength(out.length() - 1);  // Last declaration needs no semicolon
+            }
+            if (c == '"' || c == '\'') {
+                i = copyQuoted(css, i, out);
+            } else if (c == '\\' && i + 1 < n) {
+                out.append(c).append(css.charAt(++i));  // Escaped identifier character
+            } else {
+                out.append(c);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Strip comments, indentation, trailing spaces and blank lines
+     */
+    public static String js(String js) {
+        if (js == null) return "";
+        StringBuilder out = new StringBuilder(js.length());
+        int n = js.length();
+        boolean space = false;
+        for (int i = 0; i < n; i++) {
+            char c = js.charAt(i);
+            if (c == '\n' || c == '\r') {
+                newline(out);
+                space = false;
+                continue;
+            }
+            if (c == ' ' || c == '\t' || c == '\f' || c == '\u000B') {
+                space = true;
+                continue;
+            }
+            if (c == '/' && i + 1 < n && js.charAt(i + 1) == '/') {
+                int end = js.indexOf('\n', i);
+                i = (end < 0 ? n : end) - 1;  // The line break itself is kept
+                continue;
+            }
+            if (c == '/' && i + 1 < n && js.charAt(i + 1) == '*') {
+                int end = js.indexOf("*/", i + 2);
+                int stop = end < 0 ? n : end + 2;
+                if (js.indexOf('\n', i) >= 0 && js.indexOf('\n', i) < stop) {
+                    newline(out);  // A comment spanning lines still ends the statement
+                    space = false;
+                } else {
+                    space = true;
+                }
+                i = stop - 1;
+                continue;
+            }
+            if (space) {
+                if (out.length() > 0 && out.charAt(out.length() - 1) != '\n') out.append(' ');
+                space = false;
+            }
+            if (c == '"' || c == '\'' || c == '`') {
+                i = copyQuoted(js, i, out);
+            } else if (c == '/' && regexAllowed(out)) {
+                i = copyRegex(js, i, out);
+            } else {
+                out.append(c);
+            }
+        }
+        newline(out);
+        if (out.length() > 0) out.setLength(out.length() - 1);
+        return out.toString();
+    }
+
+    private static void newline(StringBuilder out) {
+        int end = out.length();
+        while (end > 0 && out.charAt(end - 1) == ' ') end--;
+        out.setLength(end);
+        if (end > 0 && out.charAt(end - 1) != '\n') out.append('\n');
+    }
+
+    /**
+     * Copy a string or template literal starting at the opening quote
+     * @return index of the closing quote
+     */
+    private static int copyQuoted(String source, int start, StringBuilder out) {
+        char quote = source.charAt(start);
+        out.append(quote);
+        int i = start + 1;
+        for (; i < source.length(); i++) {
+            char c = source.charAt(i);
+            out.append(c);
+            if (c == '\\' && i + 1 < source.length()) {
+                out.append(source.charAt(++i));
+            } else if (c == quote) {
+                break;
+            }
+        }
+        return Math.min(i, source.length() - 1);
+    }
+
+    /**
+     * Copy a regular expression literal up to its closing slash; flags follow as normal text
+     */
+    private static int copyRegex(String source, int start, StringBuilder out) {
+        out.append('/');
+        boolean inClass = false;
+        int i = start + 1;
+        for (; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '\n' || c == '\r') {
+                return i - 1;  // Not a regex after all; let the caller handle the break
+            }
+            out.append(c);
+            if (c == '\\' && i + 1 < source.length()) {
+                out.append(source.charAt(++i));
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == ']') {
+                inClass = false;
+            } else if (c == '/' && !inClass) {
+                break;
+            }
+        }
+        return Math.min(i, source.length() - 1);
+    }
+
+    private static boolean regexAllowed(StringBuilder out) {
+        int i = out.length() - 1;
+        while (i >= 0 && (out.charAt(i) == ' ' || out.charAt(i) == '\n')) i--;
+        if (i < 0) return true;
+        char last = out.charAt(i);
+        if (REGEX_PRECEDERS.indexOf(last) >= 0) return true;
+        if (!Character.isJavaIdentifierPart(last)) return false;
+        int start = i;
+        while (start > 0 && Character.isJavaIdentifierPart(out.charAt(start - 1))) start--;
+        return REGEX_KEYWORDS.contains(out.substring(start, i + 1));
+    }
+}
@@ -2,9 +2,10 @@ package com.blocvibe.app;
 
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "projects")
+@Entity(tableName = "projects", indices = {@Index("last_modified")})
 public class Project {
     @PrimaryKey(autoGenerate = true)
     public long id;
@@ -20,17 +21,26 @@ public class Project {
     @ColumnInfo(name = "js_content")
     public String jsContent;   // Global scripts
     
-    @ColumnInfo(name = "elements_json")
-    public String elementsJson;  // JSON serialization of List<BlocElement>
+    // Elements live in their own table, one row per element (see ElementRecord)
     
     @ColumnInfo(name = "last_modified")
     public long lastModified;
+    
+    // Summary stats so the project list never has to load the content columns
+    @ColumnInfo(name = "element_count", defaultValue = "0")
+    public int elementCount;
+    
+    @ColumnInfo(name = "byte_size", defaultValue = "0")
+    public long byteSize;   // UTF-8 size of the element rows + css_content + js_content
+    
+    // Incremented on every write so editors can tell their own saves from external ones
+    @ColumnInfo(name = "revision", defaultValue = "0")
+    public long revision;
 
     public Project() {
         // Default constructor for Room
         this.cssContent = "";
         this.jsContent = "";
-        this.elementsJson = "[]";  // Empty array as default
         this.lastModified = System.currentTimeMillis();
     }
 
@@ -43,8 +53,31 @@ public class Project {
     }
 
     public String getLastModified() {
+        return formatLastModified(lastModified);
+    }
+
+    /**
+     * Refresh the summary columns after the content changed
+     * @param elementBytes total ElementRecord.byteSize() of the project's element rows
+     */
+    public void updateStats(int elementCount, long elementBytes) {
+        this.elementCount = elementCount;
+        this.byteSize = elementBytes + utf8Length(cssContent) + utf8Length(jsContent);
+    }
+
+    /**
+     * Format a timestamp as a relative "Last modified" label
+     */
+    public static String formatLastModified(long lastModified) {
+        return formatLastModified(lastModified, System.currentTimeMillis());
+    }
+
+    /**
+     * Format a timestamp as a relative "Last modified" label as seen at time now
+     */
+    public static String formatLastModified(long lastModified, long now) {
         // Format timestamp for display
-        long diffMs = System.currentTimeMillis() - lastModified;
+        long diffMs = now - lastModified;
         long diffSec = diffMs / 1000;
         long diffMin = diffSec / 60;
         long diffHours = diffMin / 60;
@@ -73,4 +106,26 @@ public class Project {
     public void setLastModified(String lastModified) {
         // This method is kept for compatibility but not used
     }
+
+    /**
+     * Encoded UTF-8 length of a string without allocating the encoded bytes
+     */
+    static long utf8Length(String value) {
+        if (value == null) return 0;
+        long length = 0;
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
 }
@@ -1,33 +1,88 @@
 package com.blocvibe.app;
 
 import android.view.LayoutInflater;
-import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ImageButton;
-import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import com.blocvibe.app.databinding.ListItemProjectBinding;
 import java.util.List;
+import java.util.Objects;
 
-public class ProjectAdapter extends RecyclerView.Adapter<ProjectAdapter.ProjectViewHolder> {
+public class ProjectAdapter extends RecyclerView.Adapter<ProjectAdapter.ProjectViewHolder>
+        implements RelativeTimeFormatter.OnTickListener {
 
-    private List<Project> projects;
+    // Partial-bind payloads: only the listed views are refreshed
+    static final int PAYLOAD_NAME = 1;
+    static final int PAYLOAD_MODIFIED = 1 << 1;
+
+    private static final DiffUtil.ItemCallback<ProjectSummary> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<ProjectSummary>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ProjectSummary oldItem, @NonNull ProjectSummary newItem) {
+            return oldItem.id == newItem.id;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ProjectSummary oldItem, @NonNull ProjectSummary newItem) {
+            return Objects.equals(oldItem.name, newItem.name)
+                    && oldItem.lastModified == newItem.lastModified;
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull ProjectSummary oldItem, @NonNull ProjectSummary newItem) {
+            int payload = 0;
+            if (!Objects.equals(oldItem.name, newItem.name)) payload |= PAYLOAD_NAME;
+            if (oldItem.lastModified != newItem.lastModified) payload |= PAYLOAD_MODIFIED;
+            return payload;
+        }
+    };
+
+    private final AsyncListDiffer<ProjectSummary> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    private final RelativeTimeFormatter timeFormatter = RelativeTimeFormatter.getInstance();
     private OnProjectClickListener listener;
 
     public interface OnProjectClickListener {
-        void onProjectClick(Project project);
-        void onProjectMenuClick(Project project);
+        void onProjectClick(ProjectSummary project);
+        void onProjectMenuClick(ProjectSummary project);
     }
 
-    public ProjectAdapter(List<Project> projects, OnProjectClickListener listener) {
-        this.projects = projects;
+    public ProjectAdapter(List<ProjectSummary> projects, OnProjectClickListener listener) {
         this.listener = listener;
+        setHasStableIds(true);
+        differ.submitList(projects);
     }
     
-    public void updateProjects(List<Project> newProjects) {
-        this.projects = newProjects;
-        notifyDataSetChanged();
+    /**
+     * Diff the new list against the current one on a background thread and
+     * dispatch only the resulting row changes
+     */
+    public void updateProjects(List<ProjectSummary> newProjects) {
+        differ.submitList(newProjects);
+    }
+
+    @Override
+    public void onTimeTick() {
+        // Relative labels moved on; rebind just that text on every row
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_MODIFIED);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        timeFormatter.addOnTickListener(this);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onDetachedFromRecyclerView(recyclerView);
+        timeFormatter.removeOnTickListener(this);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).id;
     }
 
     @NonNull
@@ -35,43 +90,69 @@ public class ProjectAdapter extends RecyclerView.Adapter<ProjectAdapter.ProjectV
     public ProjectViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         ListItemProjectBinding binding = ListItemProjectBinding.inflate(
                 LayoutInflater.from(parent.getContext()), parent, false);
-        return new ProjectViewHolder(binding);
+        return new ProjectViewHolder(binding, listener);
     }
 
     @Override
     public void onBindViewHolder(@NonNull ProjectViewHolder holder, int position) {
-        Project project = projects.get(position);
-        holder.bind(project, listener);
+        ProjectSummary project = differ.getCurrentList().get(position);
+        holder.bind(project, timeFormatter);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ProjectViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        int changes = 0;
+        for (Object payload : payloads) {
+            changes |= (Integer) payload;
+        }
+        holder.bindPartial(differ.getCurrentList().get(position), changes, timeFormatter);
     }
 
     @Override
     public int getItemCount() {
-        return projects.size();
+        return differ.getCurrentList().size();
     }
 
     static class ProjectViewHolder extends RecyclerView.ViewHolder {
         private ListItemProjectBinding binding;
+        private ProjectSummary project;
 
-        public ProjectViewHolder(ListItemProjectBinding binding) {
+        public ProjectViewHolder(ListItemProjectBinding binding, OnProjectClickListener listener) {
             super(binding.getRoot());
             this.binding = binding;
-        }
 
-        public void bind(Project project, OnProjectClickListener listener) {
-            binding.projectNameText.setText(project.getName());
-            binding.projectModifiedText.setText(project.getLastModified());
-            
+            // Click handlers are set once; they read the currently bound project
             binding.getRoot().setOnClickListener(v -> {
-                if (listener != null) {
+                if (listener != null && project != null) {
                     listener.onProjectClick(project);
                 }
             });
             
             binding.projectMenuButton.setOnClickListener(v -> {
-                if (listener != null) {
+                if (listener != null && project != null) {
                     listener.onProjectMenuClick(project);
                 }
             });
         }
+
+        public void bind(ProjectSummary project, RelativeTimeFormatter timeFormatter) {
+            this.project = project;
+            binding.projectNameText.setText(project.getName());
+            binding.projectModifiedText.setText(timeFormatter.format(project.lastModified));
+        }
+
+        void bindPartial(ProjectSummary project, int changes, RelativeTimeFormatter timeFormatter) {
+            this.project = project;
+            if ((changes & PAYLOAD_NAME) != 0) {
+                binding.projectNameText.setText(project.getName());
+            }
+            if ((changes & PAYLOAD_MODIFIED) != 0) {
+                binding.projectModifiedText.setText(timeFormatter.format(project.lastModified));
+            }
+        }
     }
 }
@@ -0,0 +1,494 @@
+package com.blocvibe.app;
+
+import android.util.Log;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ProjectArchive - Backup and restore of many projects as one .blocvibe file.
+ * The archive is a zip, so every entry is compressed on its own. It starts
+ * with a versioned header entry; then each project contributes, in order:
+ *
+ *   projects/00001/project.json   name and timestamps
+ *   projects/00001/styles.css     Project.cssContent
+ *   projects/00001/script.js      Project.jsContent
+ *   projects/00001/elements.json  element rows (ElementRecord) as a JSON array
+ *   projects/00001/journal.json   edits not yet checkpointed, if any
+ *   projects/00001/legacy_elements.json  page the row migration could not read, if any
+ *   projects/00001/assets/...     reserved for project files (images, fonts);
+ *                                 projects have none yet, so none are written
+ *
+ * Export reads projects a page at a time and each project's rows in keyset
+ * pages. Import streams rows into Room in batched transactions, so neither
+ * side ever holds a whole project's elements. Unknown entries, assets
+ * included, are skipped. Call off the main thread.
+ */
+public class ProjectArchive {
+
+    public static final String EXTENSION = ".blocvibe";
+    public static final String MIME_TYPE = "application/vnd.blocvibe+zip";
+    public static final int FORMAT_VERSION = 1;
+
+    private static final String TAG = "ProjectArchive";
+    private static final String HEADER = "blocvibe.json";
+    private static final String FORMAT = "blocvibe";
+    private static final String PROJECT_DIR = "projects/";
+    private static final int PROJECT_PAGE = 20;   // Projects per query on export
+    private static final int ROW_PAGE = 500;      // Element rows per query on export
+    private static final int BATCH_ROWS = 1000;   // Rows per transaction on import
+
+    /**
+     * Counters for one backup or restore, with throughput
+     */
+    public static class Stats {
+        public int projects;
+        public long elements;
+        public long contentBytes;  // Uncompressed entry bytes
+        public long archiveBytes;  // Bytes of the .blocvibe file
+        public long millis;
+
+        public double megabytesPerSecond() {
+            return millis > 0 ? contentBytes / 1e6 / (millis / 1000.0) : 0;
+        }
+
+        public double projectsPerSecond() {
+            return millis > 0 ? projects / (millis / 1000.0) : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                "%d projects, %d elements, %.1f MB (%.1f MB archived) in %.1f s: %.1f MB/s, %.1f projects/s",
+                projects, elements, contentBytes / 1e6, archiveBytes / 1e6, millis / 1000.0,
+                megabytesPerSecond(), projectsPerSecond());
+        }
+    }
+
+    private final ProjectDao projectDao;
+    private final ElementDao elementDao;
+
+    public ProjectArchive(ProjectDao projectDao, ElementDao elementDao) {
+        this.projectDao = projectDao;
+        this.elementDao = elementDao;
+    }
+
+    /**
+     * Write every project to out, newest first. Closes out.
+     */
+    public Stats exportAll(OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        Stats stats = new Stats();
+        CountingOutputStream archive = new CountingOutputStream(new BufferedOutputStream(out));
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+            CountingOutputStream content = new CountingOutputStream(zip);
+            Writer text = new OutputStreamWriter(content, StandardCharsets.UTF_8);  // Never closed: owns zip
+
+            zip.putNextEntry(new ZipEntry(HEADER));
+            JsonWriter header = new JsonWriter(text);
+            header.beginObject()
+                  .name("format").value(FORMAT)
+                  .name("version").value(FORMAT_VERSION)
+                  .name("created").value(System.currentTimeMillis())
+                  .name("projects").value(projectDao.countProjects())
+                  .endObject();
+            header.flush();
+            zip.closeEntry();
+
+            List<ProjectSummary> page = projectDao.getProjectSummaries(PROJECT_PAGE);
+            while (!page.isEmpty()) {
+                for (ProjectSummary summary : page) {
+                    Project project = projectDao.getProject(summary.id);
+                    if (project == null) continue;  // Deleted meanwhile
+                    stats.elements += writeProject(project, String.format(Locale.US, "%s%05d/",
+                        PROJECT_DIR, stats.projects + 1), zip, text);
+                    stats.projects++;
+                }
+                ProjectSummary last = page.get(page.size() - 1);
+                page = page.size() < PROJECT_PAGE ? new ArrayList<>()
+                    : projectDao.getProjectSummariesAfter(last.lastModified, last.id, PROJECT_PAGE);
+            }
+            text.flush();
+            stats.contentBytes = content.count;
+        }
+        stats.archiveBytes = archive.count;
+        stats.millis = (System.nanoTime() - start) / 1_000_000;
+        Log.i(TAG, "Exported " + stats);
+        return stats;
+    }
+
+    private long writeProject(Project project, String dir, ZipOutputStream zip, Writer text) throws IOException {
+        zip.putNextEntry(new ZipEntry(dir + "project.json"));
+        JsonWriter meta = new JsonWriter(text);
+        meta.beginObject()
+            .name("name").value(project.name)
+            .name("lastModified").value(project.lastModified)
+            .endObject();
+        meta.flush();
+        zip.closeEntry();
+
+        writeText(dir + "styles.css", project.cssContent, zip, text);
+        writeText(dir + "script.js", project.jsContent, zip, text);
+
+        long rows = 0;
+        zip.putNextEntry(new ZipEntry(dir + "elements.json"));
+        JsonWriter json = new JsonWriter(text);
+        json.beginArray();
+        List<ElementRecord> page = elementDao.getElementPage(project.id, "", ROW_PAGE);
+        while (!page.isEmpty()) {
+            for (ElementRecord record : page) {
+                json.beginObject()
+                    .name("id").value(record.elementId)
+                    .name("parent").value(record.parentId)
+                    .name("pos").value(record.position)
+                    .name("tag").value(record.tag)
+                    .name("text").value(record.text)
+                    .name("styles").value(record.styles)
+                    .name("attributes").value(record.attributes)
+                    .endObject();
+            }
+            rows += page.size();
+            String last = page.get(page.size() - 1).elementId;
+            page = page.size() < ROW_PAGE ? new ArrayList<>() : elementDao.getElementPage(project.id, last, ROW_PAGE);
+        }
+        json.endArray();
+        json.flush();
+        zip.closeEntry();
+
+        LegacyElements legacy = elementDao.getLegacyElements(project.id);
+        if (legacy != null && legacy.elementsJson != null) {
+            writeText(dir + "legacy_elements.json", legacy.elementsJson, zip, text);
+        }
+
+        List<EditOp> journal = elementDao.getJournal(project.id);
+        if (!journal.isEmpty()) {
+            zip.putNextEntry(new ZipEntry(dir + "journal.json"));
+            JsonWriter ops = new JsonWriter(text);
+            ops.beginArray();
+            for (EditOp op : journal) {
+                ops.beginObject()
+                   .name("type").value(op.type)
+                   .name("id").value(op.elementId)
+                   .name("parent").value(op.parentId)
+                   .name("pos").value(op.position)
+                   .name("name").value(op.name)
+                   .name("value").value(op.value)
+                   .endObject();
+            }
+            ops.endArray();
+            ops.flush();
+            zip.closeEntry();
+        }
+        return rows;
+    }
+
+    private static void writeText(String name, String value, ZipOutputStream zip, Writer text) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        if (value != null) text.write(value);
+        text.flush();
+        zip.closeEntry();
+    }
+
+    /**
+     * Add every project in the archive as a new project. A project that
+     * fails halfway is removed again before the error is thrown. Closes in.
+     */
+    public Stats importAll(InputStream in) throws IOException {
+        long start = System.nanoTime();
+        Stats stats = new Stats();
+        CountingInputStream archive = new CountingInputStream(new BufferedInputStream(in));
+        ImportState state = new ImportState(stats);
+        try (ZipInputStream zip = new ZipInputStream(archive)) {
+            CountingInputStream content = new CountingInputStream(zip);
+
+            ZipEntry entry = zip.getNextEntry();
+            if (entry == null || !HEADER.equals(entry.getName())) {
+                throw new IOException("Not a BlocVibe archive");
+            }
+            readHeader(new JsonReader(new InputStreamReader(content, StandardCharsets.UTF_8)));
+
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                int slash = name.indexOf('/', PROJECT_DIR.length());
+                if (!name.startsWith(PROJECT_DIR) || slash < 0) continue;
+                state.enter(name.substring(0, slash + 1));
+                // A fresh reader per entry, never closed: closing it would close zip
+                Reader text = new InputStreamReader(content, StandardCharsets.UTF_8);
+                switch (name.substring(slash + 1)) {
+                    case "project.json":
+                        readMeta(new JsonReader(text), state.project);
+                        break;
+                    case "styles.css":
+                        state.project.cssContent = readText(text);
+                        break;
+                    case "script.js":
+                        state.project.jsContent = readText(text);
+                        break;
+                    case "elements.json":
+                        readElements(new JsonReader(text), state);
+                        break;
+                    case "journal.json":
+                        readJournal(new JsonReader(text), state);
+                        break;
+                    case "legacy_elements.json": {
+                        LegacyElements legacy = new LegacyElements();
+                        legacy.projectId = state.insert();
+                        legacy.elementsJson = readText(text);
+                        elementDao.insertLegacyElements(legacy);
+                        break;
+                    }
+                    default:
+                        break;  // Not stored by this version
+                }
+            }
+            state.finish();
+            stats.contentBytes = content.count;
+        } catch (IOException | RuntimeException e) {
+            state.abandon();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        stats.archiveBytes = archive.count;
+        stats.millis = (System.nanoTime() - start) / 1_000_000;
+        Log.i(TAG, "Imported " + stats);
+        return stats;
+    }
+
+    private static void readHeader(JsonReader json) throws IOException {
+        String format = null;
+        int version = -1;
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "format": format = json.nextString(); break;
+                case "version": version = json.nextInt(); break;
+                default: json.skipValue();
+            }
+        }
+        json.endObject();
+        if (!FORMAT.equals(format)) {
+            throw new IOException("Not a BlocVibe archive");
+        }
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("Unsupported archive version " + version);
+        }
+    }
+
+    private static void readMeta(JsonReader json, Project project) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "name": project.name = nextString(json); break;
+                case "lastModified": project.lastModified = json.nextLong(); break;
+                default: json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    private void readElements(JsonReader json, ImportState state) throws IOException {
+        long projectId = state.insert();
+        json.beginArray();
+        while (json.hasNext()) {
+            ElementRecord record = new ElementRecord();
+            record.projectId = projectId;
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "id": record.elementId = json.nextString(); break;
+                    case "parent": record.parentId = nextString(json); break;
+                    case "pos": record.position = json.nextInt(); break;
+                    case "tag": record.tag = nextString(json); break;
+                    case "text": record.text = nextString(json); break;
+                    case "styles": record.styles = nextString(json); break;
+                    case "attributes": record.attributes = nextString(json); break;
+                    default: json.skipValue();
+                }
+            }
+            json.endObject();
+            state.add(record);
+        }
+        json.endArray();
+    }
+
+    private void readJournal(JsonReader json, ImportState state) throws IOException {
+        long projectId = state.insert();
+        json.beginArray();
+        while (json.hasNext()) {
+            EditOp op = new EditOp();
+            op.projectId = projectId;
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "type": op.type = json.nextString(); break;
+                    case "id": op.elementId = nextString(json); break;
+                    case "parent": op.parentId = nextString(json); break;
+                    case "pos": op.position = json.nextInt(); break;
+                    case "name": op.name = nextString(json); break;
+                    case "value": op.value = nextString(json); break;
+                    default: json.skipValue();
+                }
+            }
+            json.endObject();
+            state.add(op);
+        }
+        json.endArray();
+    }
+
+    private static String nextString(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return null;
+        }
+        return json.nextString();
+    }
+
+    private static String readText(Reader text) throws IOException {
+        StringWriter value = new StringWriter();
+        char[] buffer = new char[8192];
+        for (int n; (n = text.read(buffer)) != -1; ) {
+            value.write(buffer, 0, n);
+        }
+        return value.toString();
+    }
+
+    /**
+     * The project being imported: its row is inserted when the first rows
+     * arrive, rows are flushed in batches, and the finished row (with stats)
+     * goes in with the last batch
+     */
+    private class ImportState {
+        final Stats stats;
+        String dir;
+        Project project;
+        boolean inserted;
+        int elementCount;
+        long elementBytes;
+        final List<ElementRecord> records = new ArrayList<>();
+        final List<EditOp> ops = new ArrayList<>();
+
+        ImportState(Stats stats) {
+            this.stats = stats;
+        }
+
+        /** Start a new project when the entry belongs to another directory */
+        void enter(String entryDir) {
+            if (entryDir.equals(dir)) return;
+            finish();
+            dir = entryDir;
+            project = new Project();
+            project.name = "Imported project";
+        }
+
+        long insert() {
+            if (!inserted) {
+                project.id = projectDao.insertProject(project);
+                inserted = true;
+            }
+            return project.id;
+        }
+
+        void add(ElementRecord record) {
+            records.add(record);
+            elementCount++;
+            elementBytes += record.byteSize();
+            if (records.size() + ops.size() >= BATCH_ROWS) flush(null);
+        }
+
+        void add(EditOp op) {
+            ops.add(op);
+            if (records.size() + ops.size() >= BATCH_ROWS) flush(null);
+        }
+
+        private void flush(Project finished) {
+            projectDao.importBatch(records, ops, finished);
+            records.clear();
+            ops.clear();
+        }
+
+        void finish() {
+            if (project == null) return;
+            insert();
+            project.updateStats(elementCount, elementBytes);
+            flush(project);
+            stats.projects++;
+            stats.elements += elementCount;
+            project = null;
+            inserted = false;
+            elementCount = 0;
+            elementBytes = 0;
+        }
+
+        /** Remove a partly imported project; its rows go with it (ON DELETE CASCADE) */
+        void abandon() {
+            if (project != null && inserted) {
+                try {
+                    projectDao.deleteProject(project);
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "Could not remove partial import", e);
+                }
+            }
+            project = null;
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
 import androidx.room.Query;
+import androidx.room.Transaction;
 import androidx.room.Update;
 import java.util.List;
 
@@ -19,9 +20,42 @@ public interface ProjectDao {
     @Delete
     void deleteProject(Project project);
     
-    @Query("SELECT * FROM projects ORDER BY last_modified DESC")
-    LiveData<List<Project>> getAllProjects();
+    // Summary columns only, newest first; id breaks ties so paging is stable
+    @Query("SELECT id, project_name, last_modified, element_count, byte_size FROM projects " +
+           "ORDER BY last_modified DESC, id DESC LIMIT :limit")
+    List<ProjectSummary> getProjectSummaries(int limit);
     
+    // Keyset page: rows strictly after (lastModified, id) in list order
+    @Query("SELECT id, project_name, last_modified, element_count, byte_size FROM projects " +
+           "WHERE last_modified < :lastModified OR (last_modified = :lastModified AND id < :id) " +
+           "ORDER BY last_modified DESC, id DESC LIMIT :limit")
+    List<ProjectSummary> getProjectSummariesAfter(long lastModified, long id, int limit);
+    
+    // One-shot load of the full row; call off the main thread
     @Query("SELECT * FROM projects WHERE id = :projectId")
-    LiveData<Project> getProjectById(long projectId);
+    Project getProject(long projectId);
+    
+    // Cheap change signal for an open project
+    @Query("SELECT revision FROM projects WHERE id = :projectId")
+    LiveData<Long> observeRevision(long projectId);
+    
+    @Query("SELECT COUNT(*) FROM projects")
+    int countProjects();
+    
+    @Insert
+    void insertElements(List<ElementRecord> records);
+    
+    @Insert
+    void insertJournal(List<EditOp> ops);
+    
+    /**
+     * One archive import step: a batch of element rows and journal entries,
+     * plus the project row once its content is complete (null before that)
+     */
+    @Transaction
+    default void importBatch(List<ElementRecord> records, List<EditOp> ops, Project finished) {
+        if (!records.isEmpty()) insertElements(records);
+        if (!ops.isEmpty()) insertJournal(ops);
+        if (finished != null) updateProject(finished);
+    }
 }
@@ -0,0 +1,96 @@
+package com.blocvibe.app;
+
+import android.os.Handler;
+import android.os.Looper;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * ProjectPager - Loads project summaries page by page for the project list.
+ * Pages are fetched with keyset queries on (last_modified, id) on a background
+ * executor; refresh() reloads the already-visible range after the table changes.
+ * All public methods must be called on the main thread.
+ */
+public class ProjectPager {
+
+    /**
+     * Receives the full loaded list on the main thread after every change
+     */
+    public interface Listener {
+        void onProjectsLoaded(List<ProjectSummary> projects);
+    }
+
+    public static final int PAGE_SIZE = 30;
+
+    private final ProjectDao dao;
+    private final ExecutorService executor;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private List<ProjectSummary> loaded = new ArrayList<>();
+    private boolean loading;
+    private boolean endReached;
+    private int generation;  // Bumped by refresh() so in-flight pages from before it are dropped
+
+    public ProjectPager(ProjectDao dao, ExecutorService executor, Listener listener) {
+        this.dao = dao;
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    public boolean isEndReached() {
+        return endReached;
+    }
+
+    /**
+     * Append the next page if one is not already loading
+     */
+    public void loadNextPage() {
+        if (loading || endReached) return;
+        loading = true;
+
+        int requestGeneration = generation;
+        ProjectSummary last = loaded.isEmpty() ? null : loaded.get(loaded.size() - 1);
+        executor.execute(() -> {
+            List<ProjectSummary> page = last == null
+                ? dao.getProjectSummaries(PAGE_SIZE)
+                : dao.getProjectSummariesAfter(last.lastModified, last.id, PAGE_SIZE);
+            handler.post(() -> {
+                if (requestGeneration != generation) return;
+                loading = false;
+                endReached = page.size() < PAGE_SIZE;
+                List<ProjectSummary> next = new ArrayList<>(loaded.size() + page.size());
+                next.addAll(loaded);
+                next.addAll(page);
+                publish(next);
+            });
+        });
+    }
+
+    /**
+     * Reload everything currently shown (at least one page) from the top
+     */
+    public void refresh() {
+        generation++;
+        loading = true;
+
+        int requestGeneration = generation;
+        int limit = Math.max(PAGE_SIZE, loaded.size());
+        executor.execute(() -> {
+            List<ProjectSummary> rows = dao.getProjectSummaries(limit);
+            handler.post(() -> {
+                if (requestGeneration != generation) return;
+                loading = false;
+                endReached = rows.size() < limit;
+                publish(rows);
+            });
+        });
+    }
+
+    private void publish(List<ProjectSummary> projects) {
+        loaded = projects;
+        listener.onProjectsLoaded(Collections.unmodifiableList(projects));
+    }
+}
@@ -0,0 +1,32 @@
+package com.blocvibe.app;
+
+import androidx.room.ColumnInfo;
+
+/**
+ * ProjectSummary - Lightweight row for the project list.
+ * Loaded through a projection so the list never reads element rows,
+ * css_content or js_content; the full Project is only loaded when opened.
+ */
+public class ProjectSummary {
+    public long id;
+    
+    @ColumnInfo(name = "project_name")
+    public String name;
+    
+    @ColumnInfo(name = "last_modified")
+    public long lastModified;
+    
+    @ColumnInfo(name = "element_count")
+    public int elementCount;
+    
+    @ColumnInfo(name = "byte_size")
+    public long byteSize;
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLastModified() {
+        return Project.formatLastModified(lastModified);
+    }
+}
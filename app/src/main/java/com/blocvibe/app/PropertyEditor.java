@@ -0,0 +1,215 @@
+package com.blocvibe.app;
+
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.Choreographer;
+import android.widget.EditText;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * PropertyEditor - Binds property input fields to the selected element.
+ * Keystrokes are only staged; once per display frame the staged values are
+ * written to the model and turned into one combined set-props patch per
+ * element. Adding a field is a single bind() call.
+ * Main thread only.
+ */
+public class PropertyEditor {
+
+    public enum Kind { ATTRIBUTE, STYLE }
+
+    /**
+     * Supplies the element that edits apply to
+     */
+    public interface SelectionSource {
+        BlocElement getSelectedElement();
+    }
+
+    /**
+     * Receives the model changes committed in one frame: the canvas patches
+     * plus each changed property with its previous value
+     */
+    public interface OnCommitListener {
+        void onPropertiesCommitted(List<CanvasPatch> patches, List<Change> changes);
+    }
+
+    /**
+     * One property value replaced in the model; null values mean absent
+     */
+    public static class Change {
+        public final String elementId;
+        public final Kind kind;
+        public final String name;
+        public final String oldValue;
+        public final String newValue;
+
+        Change(String elementId, Kind kind, String name, String oldValue, String newValue) {
+            this.elementId = elementId;
+            this.kind = kind;
+            this.name = name;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+    }
+
+    private final SelectionSource selection;
+    private final OnCommitListener listener;
+    private final List<Binding> bindings = new ArrayList<>();
+    private final Map<String, StagedEdits> staged = new LinkedHashMap<>();
+    private final Choreographer.FrameCallback flushCallback = frameTimeNanos -> flush();
+    private boolean flushScheduled;
+    private boolean populating;  // Suppresses staging while fields are filled from the model
+
+    public PropertyEditor(SelectionSource selection, OnCommitListener listener) {
+        this.selection = selection;
+        this.listener = listener;
+    }
+
+    /**
+     * Bind an input field to an attribute or style property of the selected element
+     */
+    public void bind(EditText field, Kind kind, String name) {
+        Binding binding = new Binding(field, kind, name);
+        bindings.add(binding);
+        field.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (!populating) {
+                    stage(binding, s.toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * Fill every bound field from an element without producing edits
+     */
+    public void populate(BlocElement element) {
+        flush();  // Commit edits typed for the previous selection first
+        populating = true;
+        try {
+            for (Binding binding : bindings) {
+                String value = element != null ? binding.read(element) : null;
+                binding.field.setText(value);
+            }
+        } finally {
+            populating = false;
+        }
+    }
+
+    /**
+     * Commit staged edits immediately instead of waiting for the next frame
+     */
+    public void flush() {
+        if (flushScheduled) {
+            Choreographer.getInstance().removeFrameCallback(flushCallback);
+            flushScheduled = false;
+        }
+        if (staged.isEmpty()) return;
+
+        List<CanvasPatch> patches = new ArrayList<>();
+        List<Change> changes = new ArrayList<>();
+        for (StagedEdits edits : staged.values()) {
+            CanvasPatch patch = edits.commit(changes);
+            if (patch != null) {
+                patches.add(patch);
+            }
+        }
+        staged.clear();
+        if (!patches.isEmpty()) {
+            listener.onPropertiesCommitted(patches, changes);
+        }
+    }
+
+    private void stage(Binding binding, String value) {
+        BlocElement element = selection.getSelectedElement();
+        if (element == null) return;
+
+        StagedEdits edits = staged.get(element.elementId);
+        if (edits == null) {
+            edits = new StagedEdits(element);
+            staged.put(element.elementId, edits);
+        }
+        (binding.kind == Kind.ATTRIBUTE ? edits.attributes : edits.styles).put(binding.name, value);
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            Choreographer.getInstance().postFrameCallback(flushCallback);
+        }
+    }
+
+    private static class Binding {
+        final EditText field;
+        final Kind kind;
+        final String name;
+
+        Binding(EditText field, Kind kind, String name) {
+            this.field = field;
+            this.kind = kind;
+            this.name = name;
+        }
+
+        String read(BlocElement element) {
+            return (kind == Kind.ATTRIBUTE ? element.attributes : element.styles).get(name);
+        }
+    }
+
+    /**
+     * Latest staged values for one element within a frame
+     */
+    private static class StagedEdits {
+        final BlocElement element;
+        final Map<String, String> attributes = new HashMap<>();
+        final Map<String, String> styles = new HashMap<>();
+
+        StagedEdits(BlocElement element) {
+            this.element = element;
+        }
+
+        /**
+         * Write changed values to the model; empty styles are removed.
+         * Each change is also added to changes, with its previous value.
+         * @return the combined patch, or null if nothing actually changed
+         */
+        CanvasPatch commit(List<Change> changes) {
+            Map<String, String> changedAttributes = new HashMap<>();
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                String old = element.attributes.get(entry.getKey());
+                if (!Objects.equals(old, entry.getValue())) {
+                    element.setAttribute(entry.getKey(), entry.getValue());
+                    changedAttributes.put(entry.getKey(), entry.getValue());
+                    changes.add(new Change(element.elementId, Kind.ATTRIBUTE, entry.getKey(), old, entry.getValue()));
+                }
+            }
+            Map<String, String> changedStyles = new HashMap<>();
+            for (Map.Entry<String, String> entry : styles.entrySet()) {
+                String value = entry.getValue();
+                String old = element.styles.get(entry.getKey());
+                if (value.isEmpty()) {
+                    if (element.styles.remove(entry.getKey()) != null) {
+                        changedStyles.put(entry.getKey(), "");
+                        changes.add(new Change(element.elementId, Kind.STYLE, entry.getKey(), old, null));
+                    }
+                } else if (!value.equals(old)) {
+                    element.setStyle(entry.getKey(), value);
+                    changedStyles.put(entry.getKey(), value);
+                    changes.add(new Change(element.elementId, Kind.STYLE, entry.getKey(), old, value));
+                }
+            }
+            if (changedAttributes.isEmpty() && changedStyles.isEmpty()) {
+                return null;
+            }
+            return CanvasPatch.setProps(element.elementId, changedAttributes, changedStyles);
+        }
+    }
+}
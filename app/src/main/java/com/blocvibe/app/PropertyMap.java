@@ -0,0 +1,206 @@
+package com.blocvibe.app;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * PropertyMap - Immutable, array-backed style/attribute dictionary.
+ * Keys are kept sorted so equal contents have one canonical form, and
+ * instances are hash-consed: of(), with() and without() always return the
+ * single shared instance for a given content, so equal maps can be compared
+ * by identity. Style blocks repeated across a page are stored once.
+ * Null values are not stored. Thread-safe.
+ */
+public final class PropertyMap extends AbstractMap<String, String> {
+
+    public static final PropertyMap EMPTY = new PropertyMap(new String[0], new String[0]);
+
+    // Canonical instances; entries disappear once no element uses them
+    private static final Map<PropertyMap, WeakReference<PropertyMap>> POOL = new WeakHashMap<>();
+
+    private final String[] keys;    // Sorted
+    private final String[] values;
+    private final int hash;
+    private Set<Map.Entry<String, String>> entries;
+
+    private PropertyMap(String[] keys, String[] values) {
+        this.keys = keys;
+        this.values = values;
+        int h = 0;
+        for (int i = 0; i < keys.length; i++) {
+            h += keys[i].hashCode() ^ values[i].hashCode();  // Same as AbstractMap.hashCode
+        }
+        this.hash = h;
+    }
+
+    /**
+     * Shared instance with the same entries as map
+     */
+    public static PropertyMap of(Map<String, String> map) {
+        if (map instanceof PropertyMap) return (PropertyMap) map;
+        if (map instanceof SharedProperties) return ((SharedProperties) map).shared();
+        if (map == null || map.isEmpty()) return EMPTY;
+
+        String[] keys = new String[map.size()];
+        String[] values = new String[keys.length];
+        int n = 0;
+        for (String key : map.keySet()) {
+            if (key != null && map.get(key) != null) keys[n++] = key;
+        }
+        keys = n < keys.length ? Arrays.copyOf(keys, n) : keys;
+        values = n < values.length ? Arrays.copyOf(values, n) : values;
+        Arrays.sort(keys);
+        for (int i = 0; i < n; i++) {
+            values[i] = map.get(keys[i]);
+        }
+        return intern(keys, values);
+    }
+
+    /**
+     * Copy with one entry set (a null value removes it)
+     */
+    public PropertyMap with(String key, String value) {
+        if (value == null) return without(key);
+        int i = Arrays.binarySearch(keys, key);
+        if (i >= 0) {
+            if (values[i].equals(value)) return this;
+            String[] newValues = values.clone();
+            newValues[i] = value;
+            return intern(keys, newValues);
+        }
+        int at = -i - 1;
+        String[] newKeys = new String[keys.length + 1];
+        String[] newValues = new String[keys.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, at);
+        System.arraycopy(values, 0, newValues, 0, at);
+        newKeys[at] = key;
+        newValues[at] = value;
+        System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+        System.arraycopy(values, at, newValues, at + 1, keys.length - at);
+        return intern(newKeys, newValues);
+    }
+
+    /**
+     * Copy without the given key
+     */
+    public PropertyMap without(Object key) {
+        int i = indexOf(key);
+        if (i < 0) return this;
+        if (keys.length == 1) return EMPTY;
+        String[] newKeys = new String[keys.length - 1];
+        String[] newValues = new String[keys.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, i);
+        System.arraycopy(values, 0, newValues, 0, i);
+        System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+        System.arraycopy(values, i + 1, newValues, i, keys.length - i - 1);
+        return intern(newKeys, newValues);
+    }
+
+    /**
+     * Number of distinct maps currently shared
+     */
+    public static int poolSize() {
+        synchronized (POOL) {
+            return POOL.size();
+        }
+    }
+
+    @Override
+    public String get(Object key) {
+        int i = indexOf(key);
+        return i >= 0 ? values[i] : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        if (entries == null) {
+            entries = new AbstractSet<Map.Entry<String, String>>() {
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return new Iterator<Map.Entry<String, String>>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < keys.length;
+                        }
+
+                        @Override
+                        public Map.Entry<String, String> next() {
+                            if (next >= keys.length) throw new NoSuchElementException();
+                            int i = next++;
+                            return new SimpleImmutableEntry<>(keys[i], values[i]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return keys.length;
+                }
+            };
+        }
+        return entries;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) return true;
+        if (other instanceof PropertyMap) {
+            PropertyMap map = (PropertyMap) other;
+            return hash == map.hash && Arrays.equals(keys, map.keys) && Arrays.equals(values, map.values);
+        }
+        return super.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    private int indexOf(Object key) {
+        if (!(key instanceof String)) return -1;
+        if (keys.length <= 8) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(key)) return i;
+            }
+            return -1;
+        }
+        int i = Arrays.binarySearch(keys, (String) key);
+        return i >= 0 ? i : -1;
+    }
+
+    private static PropertyMap intern(String[] keys, String[] values) {
+        if (keys.length == 0) return EMPTY;
+        PropertyMap candidate = new PropertyMap(keys, values);
+        synchronized (POOL) {
+            WeakReference<PropertyMap> ref = POOL.get(candidate);
+            PropertyMap existing = ref != null ? ref.get() : null;
+            if (existing != null) return existing;
+            POOL.put(candidate, new WeakReference<>(candidate));
+            return candidate;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.blocvibe.app;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RelativeTimeFormatter - Shared cache of "Last modified" labels.
+ * Labels are computed against a clock that only advances on minute ticks,
+ * so every bind within the same minute reuses the cached string. Call
+ * tick() once per minute (e.g. from ACTION_TIME_TICK) to refresh.
+ * Main thread only.
+ */
+public class RelativeTimeFormatter {
+
+    /**
+     * Notified after a tick has invalidated all labels
+     */
+    public interface OnTickListener {
+        void onTimeTick();
+    }
+
+    private static RelativeTimeFormatter instance;
+
+    private final Map<Long, String> labels = new HashMap<>();
+    private final List<OnTickListener> listeners = new ArrayList<>();
+    private long now = System.currentTimeMillis();
+
+    public static RelativeTimeFormatter getInstance() {
+        if (instance == null) {
+            instance = new RelativeTimeFormatter();
+        }
+        return instance;
+    }
+
+    /**
+     * Label for a timestamp as of the last tick
+     */
+    public String format(long lastModified) {
+        String label = labels.get(lastModified);
+        if (label == null) {
+            label = Project.formatLastModified(lastModified, now);
+            labels.put(lastModified, label);
+        }
+        return label;
+    }
+
+    /**
+     * Advance the clock, drop cached labels and notify listeners
+     */
+    public void tick() {
+        now = System.currentTimeMillis();
+        labels.clear();
+        for (OnTickListener listener : new ArrayList<>(listeners)) {
+            listener.onTimeTick();
+        }
+    }
+
+    public void addOnTickListener(OnTickListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeOnTickListener(OnTickListener listener) {
+        listeners.remove(listener);
+    }
+}
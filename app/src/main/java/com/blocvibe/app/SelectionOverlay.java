@@ -0,0 +1,160 @@
+package com.blocvibe.app;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.DashPathEffect;
+import android.graphics.Paint;
+import android.graphics.Point;
+import android.graphics.PointF;
+import android.graphics.RectF;
+import android.view.View;
+import android.webkit.WebView;
+import java.util.Objects;
+
+/**
+ * SelectionOverlay - Draws the selection and hover outlines, and the drop
+ * insertion bar while dragging, above the canvas WebView from cached element
+ * geometry. Changing the selection or scrolling
+ * only invalidates this view; the page DOM is never touched. The view does
+ * not take touches or drags, so input still reaches the WebView beneath it.
+ */
+public class SelectionOverlay extends View {
+
+    private static final int OUTLINE_COLOR = 0xFF0D6EFD;
+    private static final int HOVER_FILL = 0x1A0D6EFD;
+
+    private final Paint selectedPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint hoverPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint hoverFill = new Paint();
+    private final Paint dropPaint = new Paint();
+    private final RectF drawRect = new RectF();
+    private final float cssScale;  // Device pixels per CSS pixel at the page's initial scale
+
+    private WebView webView;
+    private ElementGeometry geometry;
+    private String selectedId;
+    private String hoveredId;
+    private final RectF dropIndicator = new RectF();  // Document CSS pixels
+    private boolean showDrop;
+
+    public SelectionOverlay(Context context) {
+        super(context);
+        float density = context.getResources().getDisplayMetrics().density;
+        cssScale = density;
+
+        selectedPaint.setStyle(Paint.Style.STROKE);
+        selectedPaint.setStrokeWidth(2 * density);
+        selectedPaint.setColor(OUTLINE_COLOR);
+        selectedPaint.setPathEffect(new DashPathEffect(new float[]{6 * density, 4 * density}, 0));
+
+        hoverPaint.setStyle(Paint.Style.STROKE);
+        hoverPaint.setStrokeWidth(2 * density);
+        hoverPaint.setColor(OUTLINE_COLOR);
+        hoverFill.setColor(HOVER_FILL);
+        dropPaint.setColor(OUTLINE_COLOR);
+    }
+
+    /**
+     * Follow a WebView's scroll position using the given geometry cache
+     */
+    public void attach(WebView webView, ElementGeometry geometry) {
+        this.webView = webView;
+        this.geometry = geometry;
+        webView.setOnScrollChangeListener((v, scrollX, scrollY, oldScrollX, oldScrollY) -> invalidate());
+    }
+
+    public void setSelected(String elementId) {
+        if (!Objects.equals(selectedId, elementId)) {
+            selectedId = elementId;
+            invalidate();
+        }
+    }
+
+    public void setHovered(String elementId) {
+        if (!Objects.equals(hoveredId, elementId)) {
+            hoveredId = elementId;
+            invalidate();
+        }
+    }
+
+    /**
+     * Show the insertion bar (document CSS pixels) with the target container hovered
+     */
+    public void showDrop(String containerId, RectF indicator) {
+        hoveredId = containerId;
+        dropIndicator.set(indicator);
+        showDrop = true;
+        invalidate();
+    }
+
+    public void clearDrop() {
+        if (showDrop || hoveredId != null) {
+            showDrop = false;
+            hoveredId = null;
+            invalidate();
+        }
+    }
+
+    /**
+     * Convert a point in WebView coordinates to document CSS pixels
+     */
+    public void toDocument(float viewX, float viewY, PointF out) {
+        out.set((viewX + webView.getScrollX()) / cssScale, (viewY + webView.getScrollY()) / cssScale);
+    }
+
+    /**
+     * Drag shadow sized like an element's box on screen
+     */
+    public View.DragShadowBuilder createShadow(String elementId) {
+        RectF box = geometry.get(elementId);
+        int width = box != null ? Math.max(1, Math.round(box.width() * cssScale)) : 1;
+        int height = box != null ? Math.max(1, Math.round(box.height() * cssScale)) : 1;
+        return new View.DragShadowBuilder() {
+            @Override
+            public void onProvideShadowMetrics(Point size, Point touch) {
+                size.set(width, height);
+                touch.set(width / 2, height / 2);
+            }
+
+            @Override
+            public void onDrawShadow(Canvas canvas) {
+                canvas.drawColor(HOVER_FILL);
+                canvas.drawRect(0, 0, width, height, hoverPaint);
+            }
+        };
+    }
+
+    /**
+     * Geometry changed (new layout report)
+     */
+    public void onLayoutChanged() {
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        if (webView == null || geometry == null) return;
+        if (hoveredId != null && !hoveredId.equals(selectedId) && toView(geometry.get(hoveredId))) {
+            canvas.drawRect(drawRect, hoverFill);
+            canvas.drawRect(drawRect, hoverPaint);
+        }
+        if (toView(geometry.get(selectedId))) {
+            canvas.drawRect(drawRect, selectedPaint);
+        }
+        if (showDrop && toView(dropIndicator)) {
+            canvas.drawRect(drawRect, dropPaint);
+        }
+    }
+
+    /**
+     * Map a document CSS-pixel box into drawRect in this view's coordinates
+     */
+    private boolean toView(RectF box) {
+        if (box == null) return false;
+        float dx = webView.getLeft() - getLeft() - webView.getScrollX();
+        float dy = webView.getTop() - getTop() - webView.getScrollY();
+        drawRect.set(box.left * cssScale + dx, box.top * cssScale + dy,
+            box.right * cssScale + dx, box.bottom * cssScale + dy);
+        return true;
+    }
+}
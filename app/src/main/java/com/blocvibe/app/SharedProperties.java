@@ -0,0 +1,144 @@
+package com.blocvibe.app;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SharedProperties - Mutable Map face over a shared PropertyMap, used for
+ * BlocElement.styles and attributes. Reads go to the current shared
+ * instance; writes swap in another interned instance (copy on write), so
+ * elements with the same styles share one backing array. Writes mark the
+ * owning element dirty. Not thread-safe; hand shared() to other threads instead.
+ */
+public final class SharedProperties extends AbstractMap<String, String> {
+
+    private PropertyMap map;
+    BlocElement owner;  // Element whose styles or attributes this is, set by BlocElement
+
+    public SharedProperties() {
+        map = PropertyMap.EMPTY;
+    }
+
+    public SharedProperties(Map<String, String> initial) {
+        map = PropertyMap.of(initial);
+    }
+
+    /**
+     * Current immutable contents
+     */
+    public PropertyMap shared() {
+        return map;
+    }
+
+    @Override
+    public String get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public String put(String key, String value) {
+        String old = map.get(key);
+        changed(map.with(key, value));
+        return old;
+    }
+
+    @Override
+    public String remove(Object key) {
+        String old = map.get(key);
+        changed(map.without(key));
+        return old;
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ? extends String> other) {
+        if (map.isEmpty() && (other instanceof PropertyMap || other instanceof SharedProperties)) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> shared = (Map<String, String>) other;
+            changed(PropertyMap.of(shared));  // Adopt the shared instance without copying
+            return;
+        }
+        PropertyMap next = map;
+        for (Map.Entry<? extends String, ? extends String> entry : other.entrySet()) {
+            next = next.with(entry.getKey(), entry.getValue());
+        }
+        changed(next);
+    }
+
+    @Override
+    public void clear() {
+        changed(PropertyMap.EMPTY);
+    }
+
+    private void changed(PropertyMap next) {
+        if (next == map) return;  // Hash-consed: same instance means same contents
+        map = next;
+        if (owner != null) owner.markDirty();
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                Iterator<Map.Entry<String, String>> entries = map.entrySet().iterator();
+                return new Iterator<Map.Entry<String, String>>() {
+                    private Map.Entry<String, String> last;
+
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        last = entries.next();
+                        return last;
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (last == null) throw new IllegalStateException();
+                        SharedProperties.this.remove(last.getKey());
+                        last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return map.size();
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other instanceof SharedProperties) {
+            return map == ((SharedProperties) other).map;  // Hash-consed: equal means identical
+        }
+        return map.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+        return map.hashCode();
+    }
+}
@@ -0,0 +1,606 @@
+package com.blocvibe.app;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * SiteExporter - Writes a project as a static site: index.html, styles.css
+ * and script.js, or the three bundled in one zip. Files are streamed through
+ * a UTF-8 encoder straight into NIO channels, so the page is never held in
+ * memory. A manifest of content hashes is kept next to the output; each file
+ * is first hashed without writing and only rewritten when its hash changed,
+ * so re-exporting after a small edit costs a serialization pass, not I/O.
+ * A file whose write fails is discarded and loses its manifest entry, so
+ * the next export writes it again.
+ * Exports run on the given executor and report back on the main thread.
+ */
+public class SiteExporter {
+
+    public static final String INDEX = "index.html";
+    public static final String STYLES = "styles.css";
+    public static final String SCRIPT = "script.js";
+    static final String MANIFEST = ".blocvibe-export";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * What to produce
+     */
+    public static class Options {
+        public boolean minify;     // Minify HTML, CSS and JS
+        public String bundleName;  // Write a zip with this name instead of loose files, or null
+    }
+
+    /**
+     * Outcome of one export
+     */
+    public static class Result {
+        public final String location;
+        public int written;    // Files (re)written
+        public int unchanged;  // Files skipped because their content hash matched
+        public long bytes;     // Bytes written
+        public long millis;
+
+        Result(String location) {
+            this.location = location;
+        }
+    }
+
+    /**
+     * Receives the outcome on the main thread
+     */
+    public interface Callback {
+        void onExported(Result result);
+
+        void onExportFailed(IOException error);
+    }
+
+    /**
+     * Directory the site is written to
+     */
+    public interface Target {
+        /** Human-readable location for messages */
+        String describe();
+
+        boolean exists(String name) throws IOException;
+
+        /** Output replacing the file's content */
+        Output create(String name) throws IOException;
+
+        /** @return the file's content, or null if it does not exist */
+        InputStream read(String name) throws IOException;
+    }
+
+    /**
+     * File being written: close() completes it, discard() abandons it after a failed write
+     */
+    public interface Output extends WritableByteChannel {
+        void discard();
+    }
+
+    /**
+     * Writes the body of one output file
+     */
+    private interface Content {
+        void writeTo(Writer out) throws IOException;
+    }
+
+    private final Executor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public SiteExporter(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Export on the executor. Pass a frozen copy of the tree (BlocElement.snapshotTree).
+     */
+    public void export(List<BlocElement> elements, String css, String js, Options options, Target target,
+                       Callback callback) {
+        executor.execute(() -> {
+            try {
+                Result result = exportNow(elements, css, js, options, target);
+                mainHandler.post(() -> callback.onExported(result));
+            } catch (IOException e) {
+                mainHandler.post(() -> callback.onExportFailed(e));
+            } catch (RuntimeException e) {
+                // SAF targets throw SecurityException or IllegalArgumentException when access is lost
+                IOException error = new IOException(e.getMessage() != null ? e.getMessage() : e.toString(), e);
+                mainHandler.post(() -> callback.onExportFailed(error));
+            }
+        });
+    }
+
+    /**
+     * Export on the calling thread
+     */
+    public static Result exportNow(List<BlocElement> elements, String css, String js, Options options,
+                                   Target target) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result(target.describe());
+        Map<String, String> manifest = readManifest(target);
+        Map<String, String> updated = new LinkedHashMap<>(manifest);
+
+        HtmlSerializer serializer = options.minify ? HtmlSerializer.forMinifiedExport() : HtmlSerializer.forExport();
+        Set<PropertyMap> styles = new LinkedHashSet<>();
+        StyleClasses.collect(elements, styles);
+        String script = options.minify ? Minifier.js(js) : (js != null ? js : "");
+
+        Map<String, Content> files = new LinkedHashMap<>();
+        files.put(INDEX, out -> serializer.writeSitePage(elements, STYLES, SCRIPT, out));
+        files.put(STYLES, out -> {
+            StringBuilder stylesheet = new StringBuilder(css != null ? css : "").append('\n');
+            StyleClasses.writeRules(styles, stylesheet);
+            out.append(options.minify ? Minifier.css(stylesheet.toString()) : stylesheet);
+        });
+        files.put(SCRIPT, out -> out.append(script));
+
+        try {
+            if (options.bundleName != null) {
+                exportBundle(options.bundleName, files, target, manifest, updated, result);
+            } else {
+                for (Map.Entry<String, Content> file : files.entrySet()) {
+                    exportFile(file.getKey(), file.getValue(), target, manifest, updated, result);
+                }
+            }
+        } finally {
+            // Also after a failure, so files that were not written lose their entries
+            if (!updated.equals(manifest)) {
+                writeManifest(target, updated);
+            }
+        }
+        result.millis = (System.nanoTime() - start) / 1_000_000;
+        return result;
+    }
+
+    private static void exportFile(String name, Content content, Target target, Map<String, String> manifest,
+                                   Map<String, String> updated, Result result) throws IOException {
+        String previous = manifest.get(name);
+        if (previous != null && target.exists(name) && previous.equals(hash(content))) {
+            result.unchanged++;
+            return;
+        }
+        Output file = target.create(name);
+        DigestChannel channel = new DigestChannel(file);
+        try {
+            Writer out = new ChannelWriter(channel);
+            content.writeTo(out);
+            out.close();  // Completes the file
+        } catch (IOException | RuntimeException e) {
+            file.discard();
+            updated.remove(name);
+            throw e;
+        }
+        updated.put(name, channel.hex());
+        result.written++;
+        result.bytes += channel.count;
+    }
+
+    /**
+     * One zip holding all files; its manifest entry combines the hashes of its entries
+     */
+    private static void exportBundle(String name, Map<String, Content> files, Target target,
+                                     Map<String, String> manifest, Map<String, String> updated, Result result)
+            throws IOException {
+        MessageDigest combined = newDigest();
+        for (Map.Entry<String, Content> file : files.entrySet()) {
+            combined.update(file.getKey().getBytes(StandardCharsets.UTF_8));
+            combined.update(hash(file.getValue()).getBytes(StandardCharsets.UTF_8));
+        }
+        String bundleHash = toHex(combined.digest());
+        if (bundleHash.equals(manifest.get(name)) && target.exists(name)) {
+            result.unchanged++;
+            return;
+        }
+
+        Output bundle = target.create(name);
+        DigestChannel channel = new DigestChannel(bundle);
+        try {
+            ZipOutputStream zip = new ZipOutputStream(Channels.newOutputStream(channel));
+            // Not closed per entry: closing the writer would close the zip
+            ChannelWriter out = new ChannelWriter(Channels.newChannel(zip));
+            for (Map.Entry<String, Content> file : files.entrySet()) {
+                zip.putNextEntry(new ZipEntry(file.getKey()));
+                file.getValue().writeTo(out);
+                out.flush();
+                zip.closeEntry();
+            }
+            zip.close();  // Completes the file
+        } catch (IOException | RuntimeException e) {
+            bundle.discard();
+            updated.remove(name);
+            throw e;
+        }
+        updated.put(name, bundleHash);
+        result.written++;
+        result.bytes += channel.count;
+    }
+
+    /**
+     * Content hash of a file, computed by streaming it into the digest only
+     */
+    private static String hash(Content content) throws IOException {
+        DigestChannel channel = new DigestChannel(null);
+        try (Writer out = new ChannelWriter(channel)) {
+            content.writeTo(out);
+        }
+        return channel.hex();
+    }
+
+    private static Map<String, String> readManifest(Target target) throws IOException {
+        Map<String, String> manifest = new HashMap<>();
+        InputStream in = target.read(MANIFEST);
+        if (in == null) return manifest;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');  // "<sha-256> <name>", like sha256sum
+                if (space > 0) manifest.put(line.substring(space + 1), line.substring(0, space));
+            }
+        }
+        return manifest;
+    }
+
+    private static void writeManifest(Target target, Map<String, String> manifest) throws IOException {
+        Output file = target.create(MANIFEST);
+        try {
+            Writer out = new ChannelWriter(file);
+            for (Map.Entry<String, String> entry : manifest.entrySet()) {
+                out.append(entry.getValue()).append(' ').append(entry.getKey()).append('\n');
+            }
+            out.close();
+        } catch (IOException | RuntimeException e) {
+            file.discard();
+            throw e;
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);  // Required on every platform
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Output directory in app storage. Files are written beside their final
+     * name and renamed into place only when complete, so a failed or
+     * interrupted export leaves the old file.
+     */
+    public static Target directory(File dir) {
+        return new Target() {
+            @Override
+            public String describe() {
+                return dir.getAbsolutePath();
+            }
+
+            @Override
+            public boolean exists(String name) {
+                return new File(dir, name).isFile();
+            }
+
+            @Override
+            public Output create(String name) throws IOException {
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Cannot create " + dir);
+                }
+                File temp = new File(dir, name + ".tmp");
+                File file = new File(dir, name);
+                return new ChannelOutput(new FileOutputStream(temp).getChannel()) {
+                    @Override
+                    void completed() throws IOException {
+                        if (!temp.renameTo(file)) {
+                            throw new IOException("Cannot replace " + file);
+                        }
+                    }
+
+                    @Override
+                    void discarded() {
+                        temp.delete();
+                    }
+                };
+            }
+
+            @Override
+            public InputStream read(String name) throws IOException {
+                File file = new File(dir, name);
+                return file.isFile() ? new FileInputStream(file) : null;
+            }
+        };
+    }
+
+    /**
+     * Directory picked through the Storage Access Framework (ACTION_OPEN_DOCUMENT_TREE)
+     */
+    public static Target documentTree(ContentResolver resolver, Uri treeUri) {
+        return new Target() {
+            private final Uri dirUri = DocumentsContract.buildDocumentUriUsingTree(
+                treeUri, DocumentsContract.getTreeDocumentId(treeUri));
+            private Map<String, Uri> children;
+
+            @Override
+            public String describe() {
+                return treeUri.getLastPathSegment();
+            }
+
+            @Override
+            public boolean exists(String name) throws IOException {
+                return children().containsKey(name);
+            }
+
+            @Override
+            public Output create(String name) throws IOException {
+                Uri uri = children().get(name);
+                if (uri == null) {
+                    uri = DocumentsContract.createDocument(resolver, dirUri, mimeType(name), name);
+                    if (uri == null) throw new IOException("Cannot create " + name);
+                    children.put(name, uri);
+                }
+                ParcelFileDescriptor fd = resolver.openFileDescriptor(uri, "wt");
+                if (fd == null) throw new IOException("Cannot open " + name);
+                // Truncated in place: a discarded write leaves a partial file, which has no manifest entry
+                return new ChannelOutput(new ParcelFileDescriptor.AutoCloseOutputStream(fd).getChannel());
+            }
+
+            @Override
+            public InputStream read(String name) throws IOException {
+                Uri uri = children().get(name);
+                return uri != null ? resolver.openInputStream(uri) : null;
+            }
+
+            private Map<String, Uri> children() throws IOException {
+                if (children != null) return children;
+                children = new HashMap<>();
+                Uri query = DocumentsContract.buildChildDocumentsUriUsingTree(
+                    treeUri, DocumentsContract.getDocumentId(dirUri));
+                String[] columns = {DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+                                    DocumentsContract.Document.COLUMN_DISPLAY_NAME};
+                try (Cursor cursor = resolver.query(query, columns, null, null, null)) {
+                    if (cursor == null) throw new FileNotFoundException(treeUri.toString());
+                    while (cursor.moveToNext()) {
+                        children.put(cursor.getString(1),
+                            DocumentsContract.buildDocumentUriUsingTree(treeUri, cursor.getString(0)));
+                    }
+                } catch (SecurityException e) {
+                    children = null;
+                    throw new IOException("No access to " + treeUri, e);
+                }
+                return children;
+            }
+        };
+    }
+
+    private static String mimeType(String name) {
+        if (name.endsWith(".html")) return "text/html";
+        if (name.endsWith(".css")) return "text/css";
+        if (name.endsWith(".js")) return "text/javascript";
+        if (name.endsWith(".zip")) return "application/zip";
+        return "application/octet-stream";
+    }
+
+    /**
+     * Output over a file channel; subclasses finish the file once the channel is
+     * closed, or clean up after a discard
+     */
+    private static class ChannelOutput implements Output {
+        private final WritableByteChannel channel;
+
+        ChannelOutput(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!channel.isOpen()) return;
+            channel.close();
+            completed();
+        }
+
+        @Override
+        public void discard() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // The content is being dropped anyway
+            }
+            discarded();
+        }
+
+        void completed() throws IOException {
+        }
+
+        void discarded() {
+        }
+    }
+
+    /**
+     * Passes bytes on to a channel (or nowhere) while hashing them
+     */
+    private static final class DigestChannel implements WritableByteChannel {
+        private final WritableByteChannel target;  // Null: hash only
+        private final MessageDigest digest = newDigest();
+        private boolean open = true;
+        long count;
+
+        DigestChannel(WritableByteChannel target) {
+            this.target = target;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            ByteBuffer view = src.duplicate();
+            int written = target != null ? target.write(src) : src.remaining();
+            if (target == null) src.position(src.limit());
+            view.limit(view.position() + written);
+            digest.update(view);
+            count += written;
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+            open = false;
+            if (target != null) target.close();
+        }
+
+        String hex() {
+            return toHex(digest.digest());
+        }
+    }
+
+    /**
+     * Writer that encodes UTF-8 into a direct buffer and drains it into a
+     * channel, without the intermediate stream layers of OutputStreamWriter
+     */
+    private static final class ChannelWriter extends Writer {
+        private final WritableByteChannel channel;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE / 4);
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        ChannelWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            while (length > 0) {
+                int n = Math.min(length, chars.remaining());
+                chars.put(buffer, offset, n);
+                offset += n;
+                length -= n;
+                if (!chars.hasRemaining()) encode(false);
+            }
+        }
+
+        @Override
+        public void write(String text, int offset, int length) throws IOException {
+            while (length > 0) {
+                int n = Math.min(length, chars.remaining());
+                text.getChars(offset, offset + n, chars.array(), chars.arrayOffset() + chars.position());
+                chars.position(chars.position() + n);
+                offset += n;
+                length -= n;
+                if (!chars.hasRemaining()) encode(false);
+            }
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            chars.put((char) c);
+            if (!chars.hasRemaining()) encode(false);
+        }
+
+        @Override
+        public Writer append(CharSequence text) throws IOException {
+            String value = String.valueOf(text);
+            write(value, 0, value.length());
+            return this;
+        }
+
+        @Override
+        public Writer append(CharSequence text, int start, int end) throws IOException {
+            if (text instanceof String) {
+                write((String) text, start, end - start);
+            } else {
+                for (int i = start; i < end; i++) write(text.charAt(i));
+            }
+            return this;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            encode(false);
+            drain();
+        }
+
+        /**
+         * Flush and close the channel. If flushing fails the channel stays
+         * open, so an Output is not completed with partial content.
+         */
+        @Override
+        public void close() throws IOException {
+            if (!channel.isOpen()) return;
+            encode(true);
+            while (encoder.flush(bytes) == CoderResult.OVERFLOW) drain();
+            drain();
+            channel.close();
+        }
+
+        /**
+         * Encode buffered chars; a trailing high surrogate waits for its pair
+         */
+        private void encode(boolean endOfInput) throws IOException {
+            chars.flip();
+            while (encoder.encode(chars, bytes, endOfInput) == CoderResult.OVERFLOW) {
+                drain();
+            }
+            chars.compact();
+        }
+
+        private void drain() throws IOException {
+            bytes.flip();
+            while (bytes.hasRemaining()) channel.write(bytes);
+            bytes.clear();
+        }
+    }
+}
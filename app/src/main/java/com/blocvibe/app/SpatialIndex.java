@@ -0,0 +1,112 @@
+package com.blocvibe.app;
+
+import android.graphics.RectF;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SpatialIndex - Static packed R-tree over element boxes, bulk loaded with
+ * Sort-Tile-Recursive. The canvas reports a complete layout at once, so the
+ * tree is rebuilt per report instead of supporting incremental inserts.
+ * Point queries visit O(log n) nodes, cheap enough for every drag move event.
+ * Immutable once built.
+ */
+public class SpatialIndex {
+
+    private static final int NODE_SIZE = 16;
+
+    private final String[] ids;     // Leaf entries in packed order
+    private final float[][] levels; // levels[0]: entry boxes, levels[k]: node boxes; 4 floats each
+
+    public SpatialIndex(Map<String, RectF> boxes) {
+        int n = boxes.size();
+        String[] keys = new String[n];
+        float[] leaf = new float[n * 4];
+        Integer[] order = new Integer[n];
+        String[] unsorted = boxes.keySet().toArray(new String[0]);
+        float[] raw = new float[n * 4];
+        for (int i = 0; i < n; i++) {
+            RectF box = boxes.get(unsorted[i]);
+            raw[4 * i] = box.left;
+            raw[4 * i + 1] = box.top;
+            raw[4 * i + 2] = box.right;
+            raw[4 * i + 3] = box.bottom;
+            order[i] = i;
+        }
+
+        // STR: sort by x centre into vertical slices, then by y centre within each slice
+        Arrays.sort(order, Comparator.comparingDouble(i -> raw[4 * i] + raw[4 * i + 2]));
+        int leafCount = (n + NODE_SIZE - 1) / NODE_SIZE;
+        int sliceSize = NODE_SIZE * (int) Math.ceil(Math.sqrt(leafCount));
+        for (int start = 0; start < n; start += Math.max(1, sliceSize)) {
+            int end = Math.min(n, start + Math.max(1, sliceSize));
+            Arrays.sort(order, start, end, Comparator.comparingDouble(i -> raw[4 * i + 1] + raw[4 * i + 3]));
+        }
+        for (int i = 0; i < n; i++) {
+            keys[i] = unsorted[order[i]];
+            System.arraycopy(raw, 4 * order[i], leaf, 4 * i, 4);
+        }
+        ids = keys;
+
+        // Each level groups NODE_SIZE consecutive boxes of the level below
+        int depth = 1;
+        for (int count = n; count > NODE_SIZE; count = (count + NODE_SIZE - 1) / NODE_SIZE) {
+            depth++;
+        }
+        levels = new float[depth][];
+        levels[0] = leaf;
+        for (int level = 1; level < depth; level++) {
+            float[] below = levels[level - 1];
+            int belowCount = below.length / 4;
+            int count = (belowCount + NODE_SIZE - 1) / NODE_SIZE;
+            float[] nodes = new float[count * 4];
+            for (int node = 0; node < count; node++) {
+                float left = Float.MAX_VALUE, top = Float.MAX_VALUE;
+                float right = -Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+                for (int child = node * NODE_SIZE, end = Math.min(belowCount, child + NODE_SIZE); child < end; child++) {
+                    left = Math.min(left, below[4 * child]);
+                    top = Math.min(top, below[4 * child + 1]);
+                    right = Math.max(right, below[4 * child + 2]);
+                    bottom = Math.max(bottom, below[4 * child + 3]);
+                }
+                nodes[4 * node] = left;
+                nodes[4 * node + 1] = top;
+                nodes[4 * node + 2] = right;
+                nodes[4 * node + 3] = bottom;
+            }
+            levels[level] = nodes;
+        }
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Add the IDs of all boxes containing the point to out (in no particular order)
+     */
+    public void queryPoint(float x, float y, List<String> out) {
+        int top = levels.length - 1;
+        int count = levels[top].length / 4;
+        for (int node = 0; node < count; node++) {
+            search(top, node, x, y, out);
+        }
+    }
+
+    private void search(int level, int node, float x, float y, List<String> out) {
+        float[] boxes = levels[level];
+        if (x < boxes[4 * node] || y < boxes[4 * node + 1] || x > boxes[4 * node + 2] || y > boxes[4 * node + 3]) {
+            return;
+        }
+        if (level == 0) {
+            out.add(ids[node]);
+            return;
+        }
+        int childCount = levels[level - 1].length / 4;
+        for (int child = node * NODE_SIZE, end = Math.min(childCount, child + NODE_SIZE); child < end; child++) {
+            search(level - 1, child, x, y, out);
+        }
+    }
+}
@@ -1,8 +1,7 @@
 package com.blocvibe.app;
 
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
+import android.content.Context;
 import android.content.Intent;
 import androidx.appcompat.app.AppCompatActivity;
 import com.blocvibe.app.databinding.ActivitySplashBinding;
@@ -17,11 +16,28 @@ public class SplashActivity extends AppCompatActivity {
         binding = ActivitySplashBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
-        // Navigate to MainActivity after 2500ms
-        new Handler(Looper.getMainLooper()).postDelayed(() -> {
-            Intent intent = new Intent(SplashActivity.this, MainActivity.class);
-            startActivity(intent);
-            finish();
-        }, 2500);
+        // Cold-start work runs in parallel while the splash is showing;
+        // MainActivity opens as soon as the database it queries is ready
+        Context appContext = getApplicationContext();
+        new StartupGraph()
+            .add("database", false, true, () -> AppDatabase.getInstance(appContext))
+            .add("database-open", false, true,
+                // Opening the connection runs any pending migration
+                () -> AppDatabase.getInstance(appContext).getOpenHelper().getWritableDatabase(),
+                "database")
+            .add("first-page", false, false,
+                () -> AppDatabase.getInstance(appContext).projectDao().getProjectSummaries(ProjectPager.PAGE_SIZE),
+                "database-open")
+            .add("json", false, false,
+                () -> new BlocElementTypeAdapter().parseTree("[{\"tag\":\"div\",\"children\":[]}]"))
+            .add("canvas-webview", true, false, () -> CanvasShell.warmUp(appContext))
+            .start(this::openMain);
+    }
+
+    private void openMain() {
+        if (isFinishing() || isDestroyed()) return;
+        Intent intent = new Intent(SplashActivity.this, MainActivity.class);
+        startActivity(intent);
+        finish();
     }
 }
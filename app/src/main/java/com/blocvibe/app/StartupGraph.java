@@ -0,0 +1,189 @@
+package com.blocvibe.app;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * StartupGraph - Runs cold-start work as a graph of named tasks with declared
+ * dependencies. Independent tasks run in parallel on a small pool (or on the
+ * main thread when they must); a task starts as soon as everything it depends
+ * on has finished. The listener is told once every critical task is done, so
+ * the UI can move on while non-critical tasks keep running. Per-task timings
+ * are logged under the "Startup" tag and kept for the process.
+ */
+public class StartupGraph {
+
+    private static final String TAG = "Startup";
+
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * Called on the main thread once all critical tasks have finished (failed tasks count as finished)
+     */
+    public interface Listener {
+        void onCriticalPathReady();
+    }
+
+    /**
+     * Outcome of one task, in milliseconds relative to start()
+     */
+    public static class Timing {
+        public final String name;
+        public final long startMs;
+        public final long durationMs;
+        public final String thread;
+        public final boolean failed;
+
+        Timing(String name, long startMs, long durationMs, String thread, boolean failed) {
+            this.name = name;
+            this.startMs = startMs;
+            this.durationMs = durationMs;
+            this.thread = thread;
+            this.failed = failed;
+        }
+    }
+
+    private static volatile List<Timing> lastTimings = Collections.emptyList();
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private final List<Timing> timings = new ArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private ExecutorService executor;
+    private Listener listener;
+    private long startedAt;
+    private int remaining;
+    private int criticalRemaining;
+
+    /**
+     * Declare a task. Dependencies must be declared before the task that needs them.
+     * @param mainThread run on the main thread (e.g. anything creating views)
+     * @param critical the listener waits for this task
+     */
+    public StartupGraph add(String name, boolean mainThread, boolean critical, Task task, String... dependsOn) {
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate startup task " + name);
+        }
+        Node node = new Node(name, mainThread, critical, task);
+        for (String dependency : dependsOn) {
+            Node parent = nodes.get(dependency);
+            if (parent == null) {
+                throw new IllegalArgumentException(name + " depends on unknown task " + dependency);
+            }
+            parent.dependents.add(node);
+            node.pending++;
+        }
+        nodes.put(name, node);
+        return this;
+    }
+
+    /**
+     * Start every task without dependencies. Must be called on the main thread.
+     */
+    public void start(Listener listener) {
+        this.listener = listener;
+        startedAt = SystemClock.uptimeMillis();
+        int threads = Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+        executor = Executors.newFixedThreadPool(threads);
+
+        remaining = nodes.size();
+        for (Node node : nodes.values()) {
+            if (node.critical) criticalRemaining++;
+        }
+        if (criticalRemaining == 0) {
+            mainHandler.post(listener::onCriticalPathReady);
+        }
+        for (Node node : new ArrayList<>(nodes.values())) {
+            if (node.pending == 0) {
+                schedule(node);
+            }
+        }
+    }
+
+    /**
+     * Timings of the most recent graph that finished in this process
+     */
+    public static List<Timing> getLastTimings() {
+        return lastTimings;
+    }
+
+    private void schedule(Node node) {
+        Runnable run = () -> execute(node);
+        if (node.mainThread) {
+            mainHandler.post(run);
+        } else {
+            executor.execute(run);
+        }
+    }
+
+    private void execute(Node node) {
+        long begin = SystemClock.uptimeMillis();
+        boolean failed = false;
+        try {
+            node.task.run();
+        } catch (Exception e) {
+            failed = true;
+            Log.e(TAG, "Task " + node.name + " failed", e);
+        }
+        Timing timing = new Timing(node.name, begin - startedAt, SystemClock.uptimeMillis() - begin,
+            Thread.currentThread().getName(), failed);
+        // Bookkeeping stays on the main thread, so the counters need no locking
+        mainHandler.post(() -> onFinished(node, timing));
+    }
+
+    private void onFinished(Node node, Timing timing) {
+        timings.add(timing);
+        for (Node dependent : node.dependents) {
+            if (--dependent.pending == 0) {
+                schedule(dependent);
+            }
+        }
+        if (node.critical && --criticalRemaining == 0) {
+            Log.i(TAG, "Critical path ready after " + (SystemClock.uptimeMillis() - startedAt) + " ms");
+            listener.onCriticalPathReady();
+        }
+        if (--remaining == 0) {
+            executor.shutdown();
+            lastTimings = Collections.unmodifiableList(new ArrayList<>(timings));
+            logTimings();
+        }
+    }
+
+    private void logTimings() {
+        StringBuilder report = new StringBuilder("Startup finished in ")
+            .append(SystemClock.uptimeMillis() - startedAt).append(" ms");
+        for (Timing timing : timings) {
+            report.append("\n  ").append(timing.name)
+                .append(": +").append(timing.startMs).append(" ms, ")
+                .append(timing.durationMs).append(" ms on ").append(timing.thread);
+            if (timing.failed) report.append(" (failed)");
+        }
+        Log.i(TAG, report.toString());
+    }
+
+    private static class Node {
+        final String name;
+        final boolean mainThread;
+        final boolean critical;
+        final Task task;
+        final List<Node> dependents = new ArrayList<>();
+        int pending;  // Dependencies not finished yet
+
+        Node(String name, boolean mainThread, boolean critical, Task task) {
+            this.name = name;
+            this.mainThread = mainThread;
+            this.critical = critical;
+            this.task = task;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.blocvibe.app;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * StyleClasses - Hoists element style maps into generated CSS classes.
+ * Every distinct style map becomes one rule, ".bv-<hash> { ... }", written
+ * once in the page stylesheet after the project CSS; elements carry the
+ * class instead of an inline style attribute. The class name is derived
+ * from the declarations alone, so an element's class depends only on its
+ * own styles: editing one element changes its class and at most adds a
+ * rule, and the canvas and export agree on names without shared state.
+ * Declarations are marked !important so, like the inline styles they
+ * replace, they win over every ordinary project rule whatever its
+ * specificity. Against project rules that are themselves !important the
+ * usual specificity and order apply. Thread-safe.
+ */
+public final class StyleClasses {
+
+    public static final String PREFIX = "bv-";
+
+    private static final String IMPORTANT = "!important";
+
+    // Name and declaration text per distinct style map; PropertyMap is immutable
+    private static final Map<PropertyMap, String[]> RULES = new WeakHashMap<>();
+
+    private StyleClasses() {
+    }
+
+    /**
+     * Generated class for a style map, or null if it is empty
+     */
+    public static String className(Map<String, String> styles) {
+        return styles.isEmpty() ? null : rule(PropertyMap.of(styles))[0];
+    }
+
+    /**
+     * Declaration block body for a style map, e.g. "color: red !important; margin: 0 !important;"
+     */
+    public static String declarations(Map<String, String> styles) {
+        return styles.isEmpty() ? "" : rule(PropertyMap.of(styles))[1];
+    }
+
+    /**
+     * Value of the class attribute once the generated class is added to the user's classes
+     * @return null if there is no class at all
+     */
+    public static String classAttribute(String userClass, Map<String, String> styles) {
+        String generated = className(styles);
+        if (generated == null) return userClass;
+        return userClass == null || userClass.trim().isEmpty() ? generated : userClass + " " + generated;
+    }
+
+    /**
+     * Add the style map of every element in the tree, in document order
+     */
+    public static void collect(List<BlocElement> elements, Set<PropertyMap> into) {
+        for (BlocElement el : elements) {
+            if (!el.styles.isEmpty()) into.add(PropertyMap.of(el.styles));
+            collect(el.children, into);
+        }
+    }
+
+    /**
+     * Class name to declarations for each style map, e.g. for the canvas runtime
+     */
+    public static Map<String, String> ruleMap(Collection<PropertyMap> styles) {
+        Map<String, String> rules = new LinkedHashMap<>();
+        for (PropertyMap map : styles) {
+            String[] rule = rule(map);
+            rules.put(rule[0], rule[1]);
+        }
+        return rules;
+    }
+
+    /**
+     * Write one rule per style map, one per line
+     */
+    public static void writeRules(Collection<PropertyMap> styles, Appendable out) throws IOException {
+        for (PropertyMap map : styles) {
+            String[] rule = rule(map);
+            out.append('.').append(rule[0]).append(" { ").append(rule[1]).append(" }\n");
+        }
+    }
+
+    private static String[] rule(PropertyMap styles) {
+        synchronized (RULES) {
+            String[] rule = RULES.get(styles);
+            if (rule == null) {
+                String body = buildDeclarations(styles);
+                rule = new String[] {PREFIX + hash(body), body};
+                RULES.put(styles, rule);
+            }
+            return rule;
+        }
+    }
+
+    private static String buildDeclarations(PropertyMap styles) {
+        StringBuilder body = new StringBuilder();
+        for (Map.Entry<String, String> style : styles.entrySet()) {
+            if (body.length() > 0) body.append(' ');
+            escape(style.getKey(), body);
+            body.append(": ");
+            escape(style.getValue(), body);
+            if (!isImportant(style.getValue())) body.append(" !important");
+            body.append(';');
+        }
+        return body.toString();
+    }
+
+    private static boolean isImportant(String value) {
+        int end = value.length();
+        while (end > 0 && Character.isWhitespace(value.charAt(end - 1))) end--;
+        return value.regionMatches(true, end - IMPORTANT.length(), IMPORTANT, 0, IMPORTANT.length());
+    }
+
+    /**
+     * Keep a value inside its declaration block and its <style> element
+     */
+    private static void escape(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<': out.append("\\3c "); break;
+                case '{': out.append("\\7b "); break;
+                case '}': out.append("\\7d "); break;
+                default: out.append(c);
+            }
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a of the declarations in base 36; collisions are negligible at page scale
+     */
+    private static String hash(String body) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < body.length(); i++) {
+            h ^= body.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return Long.toString(h & Long.MAX_VALUE, 36);
+    }
+}
@@ -0,0 +1,257 @@
+package com.blocvibe.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class CanvasPatcherTest {
+
+    @Test
+    public void reorderMovesOnlyChildrenOutsideTheLongestRun() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            int n = 1 + random.nextInt(40);
+            List<BlocElement> tree = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                tree.add(element("e" + i));
+            }
+            CanvasPatcher patcher = new CanvasPatcher(el -> "");
+            patcher.reset(tree, "");
+            Page page = new Page(tree);
+
+            List<BlocElement> shuffled = new ArrayList<>(tree);
+            Collections.shuffle(shuffled, random);
+            CanvasPatcher.Diff diff = patcher.diff(shuffled, "");
+            assertNotNull(diff);
+            page.apply(diff.ops, shuffled);
+            assertEquals(TestTrees.describe(shuffled), page.describe());
+
+            int[] oldPositions = new int[n];
+            for (int i = 0; i < n; i++) {
+                oldPositions[i] = tree.indexOf(shuffled.get(i));
+            }
+            assertEquals(n - longestIncreasing(oldPositions), diff.ops.size());
+        }
+    }
+
+    @Test
+    public void unchangedTreeNeedsNoOps() {
+        List<BlocElement> tree = randomTree(new Random(1), 50);
+        CanvasPatcher patcher = new CanvasPatcher(el -> "");
+        patcher.reset(tree, "body {}");
+        assertEquals(Collections.emptyList(), patcher.diff(tree, "body {}").ops);
+    }
+
+    @Test
+    public void randomEditsConverge() {
+        Random random = new Random(3);
+        List<BlocElement> tree = randomTree(random, 40);
+        CanvasPatcher patcher = new CanvasPatcher(el -> "");
+        patcher.reset(tree, "");
+        Page page = new Page(tree);
+        int[] nextId = {1000};
+
+        for (int round = 0; round < 300; round++) {
+            for (int edits = 1 + random.nextInt(4); edits > 0; edits--) {
+                mutate(tree, random, nextId);
+            }
+            CanvasPatcher.Diff diff = patcher.diff(tree, "");
+            assertNotNull(diff);
+            page.apply(diff.ops, tree);
+            assertEquals("round " + round, TestTrees.describe(tree), page.describe());
+            patcher.commit(diff);
+        }
+    }
+
+    @Test
+    public void staleDiffLeavesStateUntouched() {
+        List<BlocElement> tree = new ArrayList<>(Arrays.asList(element("a"), element("b")));
+        CanvasPatcher patcher = new CanvasPatcher(el -> "");
+        patcher.reset(tree, "");
+        patcher.diff(Arrays.asList(tree.get(1), tree.get(0)), "");  // Never committed
+        assertEquals(Collections.emptyList(), patcher.diff(tree, "").ops);
+    }
+
+    private static void mutate(List<BlocElement> roots, Random random, int[] nextId) {
+        List<BlocElement> all = new ArrayList<>();
+        TestTrees.collect(roots, all);
+        BlocElement target = all.isEmpty() ? null : all.get(random.nextInt(all.size()));
+        switch (all.isEmpty() ? 0 : random.nextInt(6)) {
+            case 0: {  // Insert a new element somewhere
+                List<BlocElement> into = target == null || random.nextBoolean() ? roots : target.children;
+                into.add(random.nextInt(into.size() + 1), element("n" + nextId[0]++));
+                break;
+            }
+            case 1:  // Delete a subtree
+                TestTrees.siblings(roots, target).remove(target);
+                break;
+            case 2: {  // Move a subtree to another parent, never into itself
+                List<BlocElement> into = roots;
+                BlocElement parent = all.get(random.nextInt(all.size()));
+                if (!contains(target, parent)) into = parent.children;
+                TestTrees.siblings(roots, target).remove(target);
+                into.add(random.nextInt(into.size() + 1), target);
+                break;
+            }
+            case 3:  // Reorder siblings
+                Collections.shuffle(TestTrees.siblings(roots, target), random);
+                break;
+            case 4:
+                target.textContent = "text " + random.nextInt(5);
+                break;
+            default:  // Retagging re-creates the DOM node
+                target.tag = "div".equals(target.tag) ? "section" : "div";
+        }
+    }
+
+    private static List<BlocElement> randomTree(Random random, int count) {
+        List<BlocElement> roots = new ArrayList<>();
+        List<BlocElement> all = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            BlocElement el = element("e" + i);
+            if (all.isEmpty() || random.nextInt(4) == 0) {
+                roots.add(el);
+            } else {
+                all.get(random.nextInt(all.size())).children.add(el);
+            }
+            all.add(el);
+        }
+        return roots;
+    }
+
+    private static BlocElement element(String id) {
+        return new BlocElement(id, "div", "", new HashMap<>(), new HashMap<>(), new ArrayList<>());
+    }
+
+    private static boolean contains(BlocElement root, BlocElement el) {
+        if (root == el) return true;
+        for (BlocElement child : root.children) {
+            if (contains(child, el)) return true;
+        }
+        return false;
+    }
+
+    private static int longestIncreasing(int[] values) {
+        int best = 0;
+        int[] lengths = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            lengths[i] = 1;
+            for (int j = 0; j < i; j++) {
+                if (values[j] < values[i]) lengths[i] = Math.max(lengths[i], lengths[j] + 1);
+            }
+            best = Math.max(best, lengths[i]);
+        }
+        return best;
+    }
+
+    /**
+     * The page's DOM as the canvas runtime would hold it after applying ops.
+     * Inserted subtrees are built from the new tree, standing in for parsed markup.
+     */
+    private static class Page {
+        final Node body = new Node(null, null, null);
+        final Map<String, Node> byId = new HashMap<>();
+
+        Page(List<BlocElement> tree) {
+            for (BlocElement el : tree) {
+                body.children.add(build(el, body));
+            }
+        }
+
+        void apply(List<CanvasPatch> ops, List<BlocElement> tree) {
+            Map<String, BlocElement> elements = new HashMap<>();
+            List<BlocElement> all = new ArrayList<>();
+            TestTrees.collect(tree, all);
+            for (BlocElement el : all) {
+                elements.put(el.elementId, el);
+            }
+            // Removal targets are resolved before any insert can shadow their IDs
+            List<Node> removed = new ArrayList<>();
+            for (CanvasPatch op : ops) {
+                if (CanvasPatch.REMOVE.equals(op.op)) removed.add(byId.get(op.id));
+            }
+            for (CanvasPatch op : ops) {
+                switch (op.op) {
+                    case CanvasPatch.INSERT: {
+                        Node parent = parent(op.parentId);
+                        place(build(elements.get(op.id), parent), parent, op.afterId);
+                        break;
+                    }
+                    case CanvasPatch.MOVE: {
+                        Node node = byId.get(op.id);
+                        node.parent.children.remove(node);
+                        Node parent = parent(op.parentId);
+                        node.parent = parent;
+                        place(node, parent, op.afterId);
+                        break;
+                    }
+                    case CanvasPatch.SET_TEXT:
+                        byId.get(op.id).text = op.value;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            for (Node node : removed) {
+                node.parent.children.remove(node);
+            }
+        }
+
+        private Node parent(String id) {
+            return id == null ? body : byId.get(id);
+        }
+
+        private void place(Node node, Node parent, String afterId) {
+            int index = afterId == null ? 0 : parent.children.indexOf(byId.get(afterId)) + 1;
+            assertTrue("afterId " + afterId + " is not a child of " + parent.id, index > 0 || afterId == null);
+            parent.children.add(index, node);
+        }
+
+        private Node build(BlocElement el, Node parent) {
+            Node node = new Node(el.elementId, el.tag, parent);
+            node.text = el.textContent;
+            byId.put(node.id, node);
+            for (BlocElement child : el.children) {
+                node.children.add(build(child, node));
+            }
+            return node;
+        }
+
+        /** In the format of TestTrees.describe */
+        String describe() {
+            return describe(body.children);
+        }
+
+        private static String describe(List<Node> nodes) {
+            StringBuilder out = new StringBuilder();
+            for (Node node : nodes) {
+                out.append(node.id).append('<').append(node.tag).append(">\"").append(node.text).append('"');
+                out.append('(').append(describe(node.children)).append(')');
+            }
+            return out.toString();
+        }
+    }
+
+    private static class Node {
+        final String id;
+        final String tag;
+        String text;
+        Node parent;
+        final List<Node> children = new ArrayList<>();
+
+        Node(String id, String tag, Node parent) {
+            this.id = id;
+            this.tag = tag;
+            this.parent = parent;
+        }
+    }
+}
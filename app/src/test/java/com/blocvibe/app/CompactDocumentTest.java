@@ -0,0 +1,123 @@
+package com.blocvibe.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class CompactDocumentTest {
+
+    @Test
+    public void randomEditsMatchBlocElementTree() {
+        Random random = new Random(5);
+        List<BlocElement> model = new ArrayList<>();
+        CompactDocument doc = CompactDocument.fromTree(model);
+
+        for (int step = 0; step < 3000; step++) {
+            List<BlocElement> all = new ArrayList<>();
+            TestTrees.collect(model, all);
+            BlocElement target = all.isEmpty() ? null : all.get(random.nextInt(all.size()));
+            CompactDocument.Element node = target != null ? doc.get(target.elementId) : null;
+            switch (target == null ? 0 : random.nextInt(5)) {
+                case 0: {
+                    boolean top = target == null || random.nextBoolean();
+                    List<BlocElement> into = top ? model : target.children;
+                    int position = random.nextInt(into.size() + 1);
+                    CompactDocument.Element added = doc.insert(top ? null : node, position, "div");
+                    into.add(position, new BlocElement(added.getElementId(), "div", "",
+                        new HashMap<>(), new HashMap<>(), new ArrayList<>()));
+                    break;
+                }
+                case 1:
+                    node.remove();
+                    TestTrees.siblings(model, target).remove(target);
+                    assertNull(doc.get(target.elementId));
+                    break;
+                case 2: {
+                    String text = "text " + random.nextInt(20);
+                    node.setTextContent(text);
+                    target.textContent = text;
+                    break;
+                }
+                case 3: {
+                    String name = "s" + random.nextInt(4);
+                    String value = random.nextInt(3) == 0 ? null : "v" + random.nextInt(20);
+                    node.setStyle(name, value);
+                    put(target.styles, name, value);
+                    break;
+                }
+                default: {
+                    String name = "a" + random.nextInt(4);
+                    String value = random.nextInt(3) == 0 ? null : "v" + random.nextInt(20);
+                    node.setAttribute(name, value);
+                    put(target.attributes, name, value);
+                }
+            }
+            assertEquals("step " + step, TestTrees.describeWithProps(model),
+                TestTrees.describeWithProps(doc.toTree()));
+        }
+    }
+
+    @Test
+    public void churnDoesNotGrowTheDocument() {
+        CompactDocument doc = new CompactDocument();
+        CompactDocument.Element section = doc.insert(null, 0, "section");
+        long settled = 0;
+        for (int round = 0; round < 2000; round++) {
+            CompactDocument.Element block = doc.insert(section, 0, "div");
+            for (int i = 0; i < 10; i++) {
+                CompactDocument.Element child = doc.insert(block, i, "p");
+                child.setTextContent("unique text " + round + "/" + i);
+                child.setStyle("width", round + "px");
+                child.setAttribute("title", "t" + round);
+            }
+            block.setTextContent("block " + round);
+            block.remove();
+            if (round == 100) settled = doc.heapBytes();
+        }
+        assertEquals(1, doc.countElements());
+        assertTrue("heap grew to " + doc.heapBytes() + " from " + settled, doc.heapBytes() <= settled);
+    }
+
+    @Test
+    public void readCompactMatchesReadList() throws Exception {
+        List<BlocElement> page = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            BlocElement card = new BlocElement("div", "card " + i);
+            card.setStyle("padding", "8px");  // Shared, so written once as a block
+            card.setAttribute("class", "card");
+            BlocElement title = new BlocElement("h2", "Title");
+            title.setStyle("color", i == 0 ? "red" : "blue");
+            card.addChild(title);
+            page.add(card);
+        }
+        BlocElementTypeAdapter codec = new BlocElementTypeAdapter();
+        String json = codec.serializeTree(page);
+        assertTrue(json.contains("\"blocks\""));
+        assertEquals(TestTrees.describeWithProps(codec.parseTree(json)),
+            TestTrees.describeWithProps(codec.readCompact(new StringReader(json)).toTree()));
+
+        // Reflective Gson output: a plain array with null and editor-only fields
+        String legacy = "[{\"elementId\":\"a\",\"tag\":\"p\",\"textContent\":\"Hi\",\"styles\":{\"color\":\"red\"},"
+            + "\"attributes\":{},\"children\":[{\"elementId\":\"b\",\"tag\":\"span\",\"children\":[],"
+            + "\"parentId\":\"a\",\"isSelected\":false}],\"parentId\":null,\"isSelected\":true}]";
+        assertEquals(TestTrees.describeWithProps(codec.parseTree(legacy)),
+            TestTrees.describeWithProps(codec.readCompact(new StringReader(legacy)).toTree()));
+        assertEquals(0, codec.readCompact(new StringReader("null")).countElements());
+    }
+
+    private static void put(Map<String, String> map, String name, String value) {
+        if (value == null) {
+            map.remove(name);
+        } else {
+            map.put(name, value);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.blocvibe.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.Test;
+
+public class EditOpTest {
+
+    @Test
+    public void moveBackUndoesEveryMove() throws Exception {
+        List<BlocElement> all = new ArrayList<>();
+        TestTrees.collect(tree(), all);
+        List<String> ids = new ArrayList<>();
+        for (BlocElement el : all) {
+            ids.add(el.elementId);
+        }
+        List<String> parents = new ArrayList<>(ids);
+        parents.add(null);
+        int checked = 0;
+
+        for (String movedId : ids) {
+            for (String parentId : parents) {
+                for (int position = 0; position <= 5; position++) {
+                    List<BlocElement> roots = tree();
+                    ElementIndex index = new ElementIndex(roots);
+                    String before = TestTrees.describeIds(roots);
+                    BlocElement moved = index.get(movedId);
+                    BlocElement oldParent = index.getParent(movedId);
+                    String oldParentId = oldParent != null ? oldParent.elementId : null;
+                    int oldIndex = index.getSiblings(movedId).indexOf(moved);
+
+                    // Applied the way the editor and journal replay do
+                    if (!EditOp.move(1, movedId, parentId, position).apply(index, null)) continue;
+                    int newIndex = index.getSiblings(movedId).indexOf(moved);
+                    EditOp back = EditOp.moveBack(1, movedId, oldParentId, oldIndex, parentId, newIndex);
+                    assertTrue(back.apply(index, null));
+
+                    assertEquals(movedId + " -> " + parentId + "@" + position, before, TestTrees.describeIds(roots));
+                    checked++;
+                }
+            }
+        }
+        assertTrue(checked > 100);
+    }
+
+    @Test
+    public void moveIntoOwnSubtreeIsRejected() throws Exception {
+        List<BlocElement> roots = tree();
+        ElementIndex index = new ElementIndex(roots);
+        String before = TestTrees.describeIds(roots);
+        assertFalse(EditOp.move(1, "a", "a2", 0).apply(index, null));
+        assertFalse(EditOp.move(1, "a", "a", 0).apply(index, null));
+        assertEquals(before, TestTrees.describeIds(roots));
+    }
+
+    /**
+     * a(a1, a2(a21, a22), a3), b, c(c1)
+     */
+    private static List<BlocElement> tree() {
+        BlocElement a2 = element("a2", element("a21"), element("a22"));
+        List<BlocElement> roots = new ArrayList<>();
+        roots.add(element("a", element("a1"), a2, element("a3")));
+        roots.add(element("b"));
+        roots.add(element("c", element("c1")));
+        return roots;
+    }
+
+    private static BlocElement element(String id, BlocElement... children) {
+        List<BlocElement> list = new ArrayList<>();
+        for (BlocElement child : children) {
+            list.add(child);
+        }
+        return new BlocElement(id, "div", "", new HashMap<>(), new HashMap<>(), list);
+    }
+}
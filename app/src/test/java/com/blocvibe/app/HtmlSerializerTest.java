@@ -0,0 +1,203 @@
+package com.blocvibe.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+public class HtmlSerializerTest {
+
+    @Test
+    public void memoizedRenderMatchesFullWalk() {
+        Random random = new Random(9);
+        List<BlocElement> roots = new ArrayList<>();
+        List<BlocElement> all = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            BlocElement el = element("e" + i, "text " + i);
+            if (all.isEmpty() || random.nextInt(5) == 0) {
+                roots.add(el);
+            } else {
+                all.get(random.nextInt(all.size())).addChild(el);
+            }
+            all.add(el);
+        }
+        HtmlSerializer memoized = HtmlSerializer.forCanvas();
+        HtmlSerializer walking = HtmlSerializer.forCanvas();
+        walking.setCacheBudget(0);
+
+        for (int round = 0; round < 200; round++) {
+            BlocElement target = all.get(random.nextInt(all.size()));
+            if (random.nextBoolean()) {
+                target.setText("edit " + round);
+            } else {
+                target.setStyle("width", round + "px");
+            }
+            List<BlocElement> frozen = BlocElement.snapshotTree(roots);
+            assertEquals(walking.render(roots), memoized.render(frozen));
+            assertEquals(walking.render(roots), memoized.render(roots));
+        }
+    }
+
+    @Test
+    public void recreatedElementWithSameIdIsNotServedStaleMarkup() {
+        BlocElement page = element("page", "");
+        BlocElement before = element("card", "before");
+        before.addChild(element("card-body", ""));
+        page.addChild(before);
+        HtmlSerializer serializer = HtmlSerializer.forCanvas();
+        serializer.render(Collections.singletonList(page));
+
+        // Undo re-creates the element with the same ID and a fresh version
+        BlocElement after = element("card", "after");
+        after.addChild(element("card-body", ""));
+        page.removeChild(before);
+        page.addChild(after);
+        after.version = before.version;
+
+        HtmlSerializer walking = HtmlSerializer.forCanvas();
+        walking.setCacheBudget(0);
+        assertEquals(walking.render(page), serializer.render(page));
+    }
+
+    @Test
+    public void removedSubtreesAreNotKeptAlive() throws Exception {
+        BlocElement page = element("page", "");
+        HtmlSerializer serializer = HtmlSerializer.forCanvas();
+        WeakReference<BlocElement> removed = renderAndRemove(page, serializer);
+        for (int i = 0; i < 50 && removed.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+            serializer.render(Collections.singletonList(page));
+        }
+        assertNull("The fragment cache must not keep removed elements alive", removed.get());
+    }
+
+    @Test
+    public void evictedElementsRenderAgain() {
+        BlocElement page = element("page", "");
+        BlocElement section = element("section", "");
+        section.addChild(element("title", "Hello"));
+        page.addChild(section);
+        HtmlSerializer serializer = HtmlSerializer.forCanvas();
+        String html = serializer.render(page);
+
+        serializer.evict(Collections.singletonList("section"));
+        assertEquals(html, serializer.render(page));
+    }
+
+    @Test
+    public void elementStylesBeatMoreSpecificProjectRules() throws Exception {
+        BlocElement hero = new BlocElement("div");
+        hero.setAttribute("id", "hero");
+        hero.setAttribute("class", "banner");
+        hero.setStyle("color", "red");
+        hero.setStyle("width", "50%");
+        hero.setStyle("margin", "0 !important");  // Already important: not marked twice
+        List<BlocElement> page = Collections.singletonList(hero);
+        String projectCss = "#hero { color: blue; }\ndiv.banner { width: 10px; }\n.banner { margin: 4px; }";
+        Set<PropertyMap> styles = new LinkedHashSet<>();
+        StyleClasses.collect(page, styles);
+
+        // Export: the page links a stylesheet of project CSS followed by the generated rules
+        StringBuilder stylesheet = new StringBuilder(projectCss).append('\n');
+        StyleClasses.writeRules(styles, stylesheet);
+        StringBuilder html = new StringBuilder();
+        HtmlSerializer.forExport().writeSitePage(page, "styles.css", "script.js", html);
+        assertEquals("red", cascade(stylesheet.toString(), html.toString(), "color"));
+        assertEquals("50%", cascade(stylesheet.toString(), html.toString(), "width"));
+        assertEquals("0", cascade(stylesheet.toString(), html.toString(), "margin"));
+
+        // Canvas: the runtime writes ruleMap() entries after the project CSS
+        StringBuilder canvasSheet = new StringBuilder(projectCss).append('\n');
+        for (Map.Entry<String, String> rule : StyleClasses.ruleMap(styles).entrySet()) {
+            canvasSheet.append('.').append(rule.getKey()).append(" { ").append(rule.getValue()).append(" }\n");
+        }
+        String canvas = HtmlSerializer.forCanvas().render(page);
+        assertEquals("red", cascade(canvasSheet.toString(), canvas, "color"));
+        assertEquals("50%", cascade(canvasSheet.toString(), canvas, "width"));
+    }
+
+    /**
+     * Value of a property on the first element of markup, resolved over the
+     * stylesheet's simple selectors (tag, #id, .class) by importance, then
+     * specificity, then order
+     */
+    private static String cascade(String stylesheet, String markup, String property) {
+        Matcher tag = Pattern.compile("<(?!!)(\\w+)([^>]*)>").matcher(markup);
+        String name;
+        do {  // Skip the page shell
+            assertTrue("no element in " + markup, tag.find());
+            name = tag.group(1);
+        } while (name.matches("html|head|meta|link|body"));
+        String id = attribute(tag.group(2), "id");
+        String classAttribute = attribute(tag.group(2), "class");
+        List<String> classes = classAttribute != null ? Arrays.asList(classAttribute.split("\\s+"))
+            : Collections.<String>emptyList();
+
+        String value = null;
+        int best = -1;
+        Matcher rule = Pattern.compile("([^{}]+)\\{([^}]*)\\}").matcher(stylesheet);
+        while (rule.find()) {
+            int specificity = 0;
+            Matcher part = Pattern.compile("([#.]?)([\\w-]+)").matcher(rule.group(1).trim());
+            boolean matches = true;
+            while (part.find()) {
+                String kind = part.group(1);
+                String token = part.group(2);
+                if (kind.equals("#")) {
+                    matches &= token.equals(id);
+                    specificity += 100;
+                } else if (kind.equals(".")) {
+                    matches &= classes.contains(token);
+                    specificity += 10;
+                } else {
+                    matches &= token.equals(name);
+                    specificity += 1;
+                }
+            }
+            if (!matches) continue;
+            for (String declaration : rule.group(2).split(";")) {
+                int colon = declaration.indexOf(':');
+                if (colon < 0 || !declaration.substring(0, colon).trim().equals(property)) continue;
+                String declared = declaration.substring(colon + 1).trim();
+                boolean important = declared.endsWith("!important");
+                int weight = (important ? 10_000 : 0) + specificity;
+                if (weight >= best) {  // Later rules win ties
+                    best = weight;
+                    value = important ? declared.substring(0, declared.length() - 10).trim() : declared;
+                }
+            }
+        }
+        return value;
+    }
+
+    private static String attribute(String attributes, String name) {
+        Matcher m = Pattern.compile("\\s" + name + "=\"([^\"]*)\"").matcher(attributes);
+        return m.find() ? m.group(1) : null;
+    }
+
+    private static WeakReference<BlocElement> renderAndRemove(BlocElement page, HtmlSerializer serializer) {
+        BlocElement section = element("section", "");
+        section.addChild(element("title", "Hello"));
+        page.addChild(section);
+        serializer.render(Collections.singletonList(page));
+        page.removeChild(section);
+        return new WeakReference<>(section);
+    }
+
+    private static BlocElement element(String id, String text) {
+        return new BlocElement(id, "div", text, new SharedProperties(), new SharedProperties(), new ArrayList<>());
+    }
+}
@@ -0,0 +1,73 @@
+package com.blocvibe.app;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MinifierTest {
+
+    @Test
+    public void cssDropsCommentsAndWhitespace() {
+        assertEquals(".a{color:red;margin:0 auto}",
+            Minifier.css("/* header */\n.a {\n  color: red;\n  margin: 0  auto;\n}\n"));
+        assertEquals("ul>li,ol>li{padding:0}", Minifier.css("ul > li ,\nol > li { padding: 0 ; }"));
+        assertEquals("", Minifier.css(null));
+        assertEquals("", Minifier.css("/* unterminated"));
+    }
+
+    @Test
+    public void cssKeepsSignificantSpaces() {
+        // Descendant pseudo-classes, media query keywords, calc() operators and !important
+        assertEquals("a :hover{color:red}", Minifier.css("a :hover { color: red; }"));
+        assertEquals("@media screen and (max-width:600px){.a{width:calc(100% - 2px) !important}}",
+            Minifier.css("@media screen and (max-width: 600px) {\n  .a { width: calc(100% - 2px) !important; }\n}"));
+        assertEquals(".a .b{margin:1px 2px}", Minifier.css(".a   .b\t{ margin: 1px\n 2px }"));
+    }
+
+    @Test
+    public void cssCopiesStringsAndEscapesUntouched() {
+        assertEquals(".a::before{content:\"/* not a comment */ ; }\"}",
+            Minifier.css(".a::before { content: \"/* not a comment */ ; }\"; }"));
+        assertEquals(".a{content:'it\\'s  here'}", Minifier.css(".a { content: 'it\\'s  here' }"));
+        assertEquals(".md\\:flex{display:flex}", Minifier.css(".md\\:flex { display: flex; }"));
+    }
+
+    @Test
+    public void jsDropsCommentsIndentationAndBlankLines() {
+        assertEquals("function f(a, b) {\nreturn a + b;\n}",
+            Minifier.js("// Adds\nfunction f(a, b) {\n    return a + b;  /* sum */\n\n\n}\n"));
+        assertEquals("a b", Minifier.js("a/**/b"));
+        assertEquals("", Minifier.js(null));
+        assertEquals("", Minifier.js("   // only a comment\n\n"));
+        assertEquals("x = 1;\ny = 2;", Minifier.js("x = 1;\r\n\r\ny = 2;\r\n"));
+    }
+
+    @Test
+    public void jsKeepsLineBreaksForSemicolonInsertion() {
+        assertEquals("let a = b\n(c || d).run()", Minifier.js("let a = b\n  (c || d).run()"));
+        assertEquals("return\nvalue", Minifier.js("return\n    value"));
+        assertEquals("a\n++b", Minifier.js("a\n++b"));
+        // A block comment spanning lines ends the statement like a line break
+        assertEquals("a\nb", Minifier.js("a /* one\ntwo */ b"));
+    }
+
+    @Test
+    public void jsCopiesStringsTemplatesAndRegexesUntouched() {
+        assertEquals("s = \"// not a comment\";", Minifier.js("s = \"// not a comment\";"));
+        assertEquals("s = 'a  /* b */  c';", Minifier.js("s = 'a  /* b */  c';"));
+        assertEquals("t = `line one\n    line two`;", Minifier.js("t = `line one\n    line two`;"));
+        assertEquals("s = \"quote \\\" // inside\";", Minifier.js("s = \"quote \\\" // inside\";"));
+        assertEquals("r = /[/]\\/ // x/g;", Minifier.js("r = /[/]\\/ // x/g;"));
+        assertEquals("if (/^\\s*$/.test(s)) return /'/;", Minifier.js("if (/^\\s*$/.test(s))   return /'/;"));
+    }
+
+    @Test
+    public void jsTellsDivisionFromRegex() {
+        // A regex here would swallow the comment; as division the comment goes
+        assertEquals("x = a / b / c;", Minifier.js("x = a / b / c; // ratio"));
+        assertEquals("y = (a + b) / 2;", Minifier.js("y = (a + b) / 2; // mean"));
+        assertEquals("z = arr[0] / 4;", Minifier.js("z = arr[0] / 4; // quarter"));
+        assertEquals("w = typeof /x/;", Minifier.js("w = typeof /x/; // regex after keyword"));
+        assertEquals("v = main / 2;", Minifier.js("v = main / 2; // identifier ending in a keyword"));
+    }
+}
@@ -0,0 +1,490 @@
+package com.blocvibe.app;
+
+import static org.junit.Assume.assumeTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * PerfBenchmark - Micro-benchmarks for the editor's hot paths on synthetic
+ * projects, run on the local JVM. Skipped in normal test runs; run with
+ *
+ *   ./gradlew :app:testDebugUnitTest -Pbenchmark --tests com.blocvibe.app.PerfBenchmark
+ *
+ * Each run prints a human-readable report to standard output.
+ */
+public class PerfBenchmark {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Before
+    public void enabled() {
+        assumeTrue("Benchmarks run only with -Pbenchmark", Boolean.getBoolean("blocvibe.benchmark"));
+    }
+
+    @Test
+    public void elementJson() {
+        runElementJson(20_000, 20);
+    }
+
+    @Test
+    public void documentHeap() {
+        runDocumentHeap(50_000, 20);
+    }
+
+    @Test
+    public void sharedProperties() throws Exception {
+        runSharedProperties(50_000);
+    }
+
+    @Test
+    public void spatialIndex() {
+        runSpatialIndex(5_000, 20_000);
+    }
+
+    @Test
+    public void renderCache() {
+        runRenderCache(10_000, 200);
+    }
+
+    @Test
+    public void siteExport() throws Exception {
+        runSiteExport(10_000, temp.newFolder("site"), 20);
+    }
+
+    /**
+     * Result of timing one operation
+     */
+    public static class Measurement {
+        public final String name;
+        public final double millisPerRun;
+        public final long bytesPerRun;  // -1 when the runtime does not expose allocation stats
+
+        Measurement(String name, double millisPerRun, long bytesPerRun) {
+            this.name = name;
+            this.millisPerRun = millisPerRun;
+            this.bytesPerRun = bytesPerRun;
+        }
+
+        @Override
+        public String toString() {
+            String bytes = bytesPerRun >= 0 ? String.format(Locale.US, "%.1f KB", bytesPerRun / 1024.0) : "n/a";
+            return String.format(Locale.US, "%-28s %9.2f ms  %12s", name, millisPerRun, bytes);
+        }
+    }
+
+    /**
+     * Body of a measured operation
+     */
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * Time a task after a warm-up, reporting the average time and allocation per run
+     */
+    public static Measurement measure(String name, int iterations, Task task) {
+        try {
+            for (int i = 0; i < Math.max(1, iterations / 4); i++) {
+                task.run();  // Warm up the JIT and any caches
+            }
+            long bytesBefore = allocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                task.run();
+            }
+            long elapsed = System.nanoTime() - start;
+            long bytesAfter = allocatedBytes();
+            long bytes = bytesBefore >= 0 && bytesAfter >= 0 ? (bytesAfter - bytesBefore) / iterations : -1;
+            return new Measurement(name, elapsed / 1e6 / iterations, bytes);
+        } catch (Exception e) {
+            throw new RuntimeException("Benchmark " + name + " failed", e);
+        }
+    }
+
+    /**
+     * Bytes allocated by the current thread so far, or -1 if the JVM does not
+     * say. Looked up reflectively: unit tests compile against android.jar,
+     * which has no java.lang.management.
+     */
+    static long allocatedBytes() {
+        try {
+            Object threads = Class.forName("java.lang.management.ManagementFactory")
+                .getMethod("getThreadMXBean").invoke(null);
+            Method allocated = Class.forName("com.sun.management.ThreadMXBean")
+                .getMethod("getThreadAllocatedBytes", long.class);
+            return (Long) allocated.invoke(threads, Thread.currentThread().getId());
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Build a synthetic page of roughly elementCount elements shaped like real
+     * editor output: sections of headings, paragraphs, buttons and styled divs.
+     */
+    public static List<BlocElement> generateTree(int elementCount) {
+        List<BlocElement> roots = new ArrayList<>();
+        int created = 0;
+        while (created < elementCount) {
+            BlocElement section = new BlocElement("div", "Container");
+            section.setStyle("padding", "10px");
+            section.setStyle("border", "1px solid #ccc");
+            roots.add(section);
+            created++;
+            for (int i = 0; i < 9 && created < elementCount; i++, created++) {
+                BlocElement child;
+                switch (i % 3) {
+                    case 0:
+                        child = BlocElement.createHeading("Heading " + created, 2);
+                        break;
+                    case 1:
+                        child = BlocElement.createParagraph("Lorem ipsum dolor sit amet.");
+                        child.setStyle("color", "#333333");
+                        break;
+                    default:
+                        child = BlocElement.createButton("Click Me");
+                        child.setAttribute("class", "btn btn-primary");
+                        child.setStyle("width", "120px");
+                }
+                section.addChild(child);
+            }
+        }
+        return roots;
+    }
+
+    /**
+     * Compare reflective Gson against BlocElementTypeAdapter on a synthetic project
+     */
+    public static String runElementJson(int elementCount, int iterations) {
+        List<BlocElement> tree = generateTree(elementCount);
+        Gson gson = new Gson();
+        Type listType = new TypeToken<List<BlocElement>>(){}.getType();
+        BlocElementTypeAdapter adapter = new BlocElementTypeAdapter();
+
+        String reflectiveJson = gson.toJson(tree);
+        String streamingJson = adapter.serializeTree(tree);
+
+        List<Measurement> results = new ArrayList<>();
+        results.add(measure("serialize (reflective Gson)", iterations, () -> gson.toJson(tree)));
+        results.add(measure("serialize (TypeAdapter)", iterations, () -> adapter.serializeTree(tree)));
+        results.add(measure("parse (reflective Gson)", iterations, () -> gson.fromJson(reflectiveJson, listType)));
+        results.add(measure("parse (TypeAdapter)", iterations, () -> adapter.parseTree(streamingJson)));
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Element JSON, %d elements, %d runs%n", elementCount, iterations));
+        report.append(String.format(Locale.US, "JSON size: reflective %d chars, streaming %d chars%n",
+            reflectiveJson.length(), streamingJson.length()));
+        for (Measurement m : results) {
+            report.append(m).append('\n');
+        }
+        System.out.println(report);
+        return report.toString();
+    }
+
+    /**
+     * Compare the retained heap of a BlocElement tree with the same page in a
+     * CompactDocument, plus the cost of parsing, building and walking each
+     */
+    public static String runDocumentHeap(int elementCount, int iterations) {
+        long baseline = usedHeap();
+        List<BlocElement> tree = generateTree(elementCount);
+        long treeBytes = usedHeap() - baseline;
+
+        baseline = usedHeap();
+        CompactDocument document = CompactDocument.fromTree(tree);
+        long documentBytes = usedHeap() - baseline;
+
+        BlocElementTypeAdapter adapter = new BlocElementTypeAdapter();
+        String json = adapter.serializeTree(tree);
+
+        List<Measurement> results = new ArrayList<>();
+        results.add(measure("build (CompactDocument)", iterations, () -> CompactDocument.fromTree(tree)));
+        results.add(measure("parse (BlocElement)", iterations, () -> adapter.parseTree(json)));
+        results.add(measure("parse (CompactDocument)", iterations, () -> adapter.readCompact(new StringReader(json))));
+        results.add(measure("walk (BlocElement)", iterations, () -> walk(tree)));
+        results.add(measure("walk (CompactDocument)", iterations, () -> {
+            for (CompactDocument.Element root : document.getRoots()) {
+                walk(root);
+            }
+        }));
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Document heap, %d elements%n", elementCount));
+        report.append(String.format(Locale.US, "BlocElement tree: %8.1f KB retained (%.0f bytes/element)%n",
+            treeBytes / 1024.0, (double) treeBytes / elementCount));
+        report.append(String.format(Locale.US, "CompactDocument:  %8.1f KB retained (%.0f bytes/element), %.1f KB estimated%n",
+            documentBytes / 1024.0, (double) documentBytes / elementCount, document.heapBytes() / 1024.0));
+        for (Measurement m : results) {
+            report.append(m).append('\n');
+        }
+        System.out.println(report);
+        return report.toString();
+    }
+
+    /**
+     * Compare hash-consed style/attribute maps with one HashMap per element:
+     * retained heap, and JSON size with and without the shared blocks table
+     */
+    public static String runSharedProperties(int elementCount) throws java.io.IOException {
+        BlocElementTypeAdapter adapter = new BlocElementTypeAdapter();
+
+        long baseline = usedHeap();
+        List<BlocElement> owned = generateTree(elementCount);
+        unshare(owned);
+        PropertyMap.poolSize();  // Expunges the pool entries the copies replaced
+        long ownedBytes = usedHeap() - baseline;
+
+        baseline = usedHeap();
+        List<BlocElement> shared = generateTree(elementCount);
+        long sharedBytes = usedHeap() - baseline;
+
+        java.io.StringWriter inline = new java.io.StringWriter();
+        com.google.gson.stream.JsonWriter out = new com.google.gson.stream.JsonWriter(inline);
+        out.beginArray();
+        for (BlocElement element : owned) {
+            adapter.write(out, element);  // Inline maps, as before shared blocks
+        }
+        out.endArray();
+        out.flush();
+        String blocks = adapter.serializeTree(shared);
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Shared properties, %d elements, %d distinct maps%n",
+            elementCount, PropertyMap.poolSize()));
+        report.append(String.format(Locale.US, "Heap: HashMap per element %.1f KB, shared %.1f KB (%.0f vs %.0f bytes/element)%n",
+            ownedBytes / 1024.0, sharedBytes / 1024.0,
+            (double) ownedBytes / elementCount, (double) sharedBytes / elementCount));
+        report.append(String.format(Locale.US, "JSON: inline %d chars, with shared blocks %d chars%n",
+            inline.toString().length(), blocks.length()));
+        System.out.println(report);
+        return report.toString();
+    }
+
+    /**
+     * Point queries against random boxes: the R-tree versus scanning every box
+     */
+    public static String runSpatialIndex(int boxCount, int queries) {
+        java.util.Random random = new java.util.Random(42);
+        java.util.Map<String, android.graphics.RectF> boxes = new java.util.HashMap<>();
+        float[] flat = new float[boxCount * 4];
+        for (int i = 0; i < boxCount; i++) {
+            android.graphics.RectF box = new android.graphics.RectF();
+            box.left = random.nextFloat() * 1000;
+            box.top = random.nextFloat() * 1000;
+            box.right = box.left + random.nextFloat() * 150;
+            box.bottom = box.top + random.nextFloat() * 80;
+            boxes.put("e" + i, box);
+            flat[4 * i] = box.left;
+            flat[4 * i + 1] = box.top;
+            flat[4 * i + 2] = box.right;
+            flat[4 * i + 3] = box.bottom;
+        }
+        float[] points = new float[queries * 2];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextFloat() * 1000;
+        }
+        SpatialIndex[] index = {null};
+        List<String> hits = new ArrayList<>();
+
+        List<Measurement> results = new ArrayList<>();
+        results.add(measure("build (R-tree)", 20, () -> index[0] = new SpatialIndex(boxes)));
+        results.add(measure(queries + " queries (R-tree)", 10, () -> {
+            for (int q = 0; q < queries; q++) {
+                hits.clear();
+                index[0].queryPoint(points[2 * q], points[2 * q + 1], hits);
+            }
+        }));
+        results.add(measure(queries + " queries (scan)", 10, () -> {
+            for (int q = 0; q < queries; q++) {
+                hits.clear();
+                float x = points[2 * q], y = points[2 * q + 1];
+                for (int i = 0; i < boxCount; i++) {
+                    if (x >= flat[4 * i] && y >= flat[4 * i + 1] && x <= flat[4 * i + 2] && y <= flat[4 * i + 3]) {
+                        hits.add(null);
+                    }
+                }
+            }
+        }));
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Spatial index, %d boxes, %d point queries%n", boxCount, queries));
+        for (Measurement m : results) {
+            report.append(m).append('\n');
+        }
+        System.out.println(report);
+        return report.toString();
+    }
+
+    /**
+     * Re-render a nested page after editing one leaf, with and without the
+     * per-subtree markup cache, plus the memoized snapshot the canvas takes
+     */
+    public static String runRenderCache(int elementCount, int iterations) {
+        List<BlocElement> tree = nest(generateTree(elementCount), 10);
+        List<BlocElement> leaves = new ArrayList<>();
+        collectLeaves(tree, leaves);
+        HtmlSerializer walking = HtmlSerializer.forCanvas();
+        walking.setCacheBudget(0);
+        HtmlSerializer memoized = HtmlSerializer.forCanvas();
+        int[] edits = {0};
+        Task editLeaf = () -> {
+            BlocElement leaf = leaves.get((edits[0] * 7919) % leaves.size());
+            leaf.setText("Edited " + edits[0]++);
+        };
+
+        List<Measurement> results = new ArrayList<>();
+        results.add(measure("edit + render (full walk)", iterations, () -> {
+            editLeaf.run();
+            walking.render(tree);
+        }));
+        results.add(measure("edit + render (memoized)", iterations, () -> {
+            editLeaf.run();
+            memoized.render(tree);
+        }));
+        results.add(measure("edit + snapshot (memoized)", iterations, () -> {
+            editLeaf.run();
+            BlocElement.snapshotTree(tree);
+        }));
+        results.add(measure("edit + snapshot + render", iterations, () -> {
+            editLeaf.run();
+            memoized.render(BlocElement.snapshotTree(tree));
+        }));
+        if (!walking.render(tree).equals(memoized.render(tree))) {
+            throw new IllegalStateException("Memoized markup differs from a full walk");
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Render cache, %d elements, depth %d, %d runs%n",
+            countElements(tree), depth(tree), iterations));
+        for (Measurement m : results) {
+            report.append(m).append('\n');
+        }
+        System.out.println(report);
+        return report.toString();
+    }
+
+    /**
+     * Export a page as a static site into dir: first export, re-export with
+     * nothing changed, and re-export after editing one element
+     */
+    public static String runSiteExport(int elementCount, java.io.File dir, int iterations) {
+        List<BlocElement> tree = generateTree(elementCount);
+        SiteExporter.Target target = SiteExporter.directory(dir);
+        SiteExporter.Options options = new SiteExporter.Options();
+        String css = "body { margin: 0; }";
+        String js = "console.log('ready');";
+        new java.io.File(dir, SiteExporter.MANIFEST).delete();
+
+        List<Measurement> results = new ArrayList<>();
+        results.add(measure("export (full write)", iterations, () -> {
+            new java.io.File(dir, SiteExporter.MANIFEST).delete();
+            SiteExporter.exportNow(tree, css, js, options, target);
+        }));
+        results.add(measure("re-export (unchanged)", iterations,
+            () -> SiteExporter.exportNow(tree, css, js, options, target)));
+        int[] edits = {0};
+        results.add(measure("re-export (one edit)", iterations, () -> {
+            tree.get(0).setText("Edited " + edits[0]++);
+            SiteExporter.exportNow(tree, css, js, options, target);
+        }));
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Site export, %d elements, %.1f KB index.html%n",
+            elementCount, new java.io.File(dir, SiteExporter.INDEX).length() / 1024.0));
+        for (Measurement m : results) {
+            report.append(m).append('\n');
+        }
+        System.out.println(report);
+        return report.toString();
+    }
+
+    /**
+     * Group roots under plain containers, fanout at a time, until at most fanout remain
+     */
+    private static List<BlocElement> nest(List<BlocElement> roots, int fanout) {
+        while (roots.size() > fanout) {
+            List<BlocElement> level = new ArrayList<>();
+            for (int i = 0; i < roots.size(); i += fanout) {
+                BlocElement group = new BlocElement("div");
+                for (BlocElement child : roots.subList(i, Math.min(i + fanout, roots.size()))) {
+                    group.addChild(child);
+                }
+                level.add(group);
+            }
+            roots = level;
+        }
+        return roots;
+    }
+
+    private static void collectLeaves(List<BlocElement> elements, List<BlocElement> into) {
+        for (BlocElement element : elements) {
+            if (element.children.isEmpty()) into.add(element);
+            collectLeaves(element.children, into);
+        }
+    }
+
+    private static int countElements(List<BlocElement> elements) {
+        int count = 0;
+        for (BlocElement element : elements) {
+            count += 1 + countElements(element.children);
+        }
+        return count;
+    }
+
+    private static int depth(List<BlocElement> elements) {
+        int depth = 0;
+        for (BlocElement element : elements) {
+            depth = Math.max(depth, 1 + depth(element.children));
+        }
+        return depth;
+    }
+
+    private static void unshare(List<BlocElement> elements) {
+        for (BlocElement element : elements) {
+            element.styles = new java.util.HashMap<>(element.styles);
+            element.attributes = new java.util.HashMap<>(element.attributes);
+            unshare(element.children);
+        }
+    }
+
+    private static int walk(List<BlocElement> elements) {
+        int visited = 0;
+        for (BlocElement element : elements) {
+            visited += 1 + (element.styles.get("color") != null ? 1 : 0) + walk(element.children);
+        }
+        return visited;
+    }
+
+    private static int walk(CompactDocument.Element element) {
+        int visited = 1 + (element.getStyle("color") != null ? 1 : 0);
+        for (CompactDocument.Element child = element.getFirstChild(); child != null;
+             child = child.getNextSibling()) {
+            visited += walk(child);
+        }
+        return visited;
+    }
+
+    /**
+     * Heap in use after giving the collector a chance to run
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,113 @@
+package com.blocvibe.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class PropertyMapTest {
+
+    @Test
+    public void randomEditsMatchHashMapAndStayCanonical() {
+        Random random = new Random(11);
+        for (int run = 0; run < 50; run++) {
+            Map<String, String> model = new HashMap<>();
+            PropertyMap map = PropertyMap.EMPTY;
+            for (int step = 0; step < 200; step++) {
+                String key = "k" + random.nextInt(12);  // Over 8 keys switches to binary search
+                if (random.nextInt(3) == 0) {
+                    model.remove(key);
+                    map = random.nextBoolean() ? map.without(key) : map.with(key, null);
+                } else {
+                    String value = "v" + random.nextInt(4);
+                    model.put(key, value);
+                    map = map.with(key, value);
+                }
+                assertEquals(model, map);
+                assertEquals(map, model);
+                assertEquals(model.hashCode(), map.hashCode());
+                assertSame(map, PropertyMap.of(new HashMap<>(model)));
+                for (int k = 0; k < 12; k++) {
+                    assertEquals(model.get("k" + k), map.get("k" + k));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void insertionOrderDoesNotMatter() {
+        Map<String, String> ab = new LinkedHashMap<>();
+        ab.put("color", "red");
+        ab.put("margin", "0");
+        Map<String, String> ba = new LinkedHashMap<>();
+        ba.put("margin", "0");
+        ba.put("color", "red");
+        assertSame(PropertyMap.of(ab), PropertyMap.of(ba));
+        assertSame(PropertyMap.of(ab), PropertyMap.EMPTY.with("margin", "0").with("color", "red"));
+
+        List<String> keys = new ArrayList<>(PropertyMap.of(ba).keySet());
+        assertEquals("color", keys.get(0));  // Sorted, whatever the source order
+    }
+
+    @Test
+    public void emptyAndNullValues() {
+        assertSame(PropertyMap.EMPTY, PropertyMap.of(new HashMap<>()));
+        assertSame(PropertyMap.EMPTY, PropertyMap.of(null));
+        assertSame(PropertyMap.EMPTY, PropertyMap.EMPTY.with("a", "1").without("a"));
+
+        Map<String, String> withNull = new HashMap<>();
+        withNull.put("a", "1");
+        withNull.put("b", null);
+        PropertyMap map = PropertyMap.of(withNull);
+        assertEquals(1, map.size());
+        assertNull(map.get("b"));
+        assertSame(map, map.with("a", "1"));
+        assertSame(map, map.without("missing"));
+    }
+
+    @Test
+    public void unusedMapsLeaveThePool() throws Exception {
+        WeakReference<PropertyMap> ref = new WeakReference<>(
+            PropertyMap.EMPTY.with("unused-" + System.nanoTime(), "x"));
+        for (int i = 0; i < 50 && ref.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("The pool must not keep maps alive", ref.get());
+    }
+
+    @Test
+    public void sharedPropertiesSwapInstancesAndMarkOwnerDirty() {
+        BlocElement owner = new BlocElement("div");
+        BlocElement other = new BlocElement("div");
+        SharedProperties styles = (SharedProperties) owner.styles;
+
+        int version = owner.version;
+        owner.setStyle("color", "red");
+        assertEquals(version + 1, owner.version);
+        owner.setStyle("color", "red");  // Same contents, same instance: not a change
+        assertEquals(version + 1, owner.version);
+
+        other.setStyle("color", "red");
+        assertSame(styles.shared(), ((SharedProperties) other.styles).shared());
+        assertEquals(owner.styles, other.styles);
+
+        owner.setStyle("margin", "0");
+        Iterator<Map.Entry<String, String>> it = owner.styles.entrySet().iterator();
+        while (it.hasNext()) {
+            if ("color".equals(it.next().getKey())) it.remove();
+        }
+        assertSame(PropertyMap.EMPTY.with("margin", "0"), styles.shared());
+        assertTrue(owner.version > version + 2);
+    }
+}
@@ -0,0 +1,144 @@
+package com.blocvibe.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SiteExporterTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void unchangedFilesAreSkipped() throws Exception {
+        File dir = temp.newFolder("site");
+        SiteExporter.Options options = new SiteExporter.Options();
+        List<BlocElement> page = page("Hello");
+
+        assertEquals(3, SiteExporter.exportNow(page, "body {}", "", options, SiteExporter.directory(dir)).written);
+        SiteExporter.Result again = SiteExporter.exportNow(page, "body {}", "", options, SiteExporter.directory(dir));
+        assertEquals(0, again.written);
+        assertEquals(3, again.unchanged);
+
+        SiteExporter.Result edited = SiteExporter.exportNow(page("Bye"), "body {}", "", options,
+            SiteExporter.directory(dir));
+        assertEquals(1, edited.written);
+        assertTrue(read(dir, SiteExporter.INDEX).contains("Bye"));
+    }
+
+    @Test
+    public void failedWriteKeepsTheOldFileAndIsRetried() throws Exception {
+        File dir = temp.newFolder("site");
+        SiteExporter.Options options = new SiteExporter.Options();
+        List<BlocElement> hello = page("Hello");
+        SiteExporter.exportNow(hello, "body {}", "", options, SiteExporter.directory(dir));
+        String before = read(dir, SiteExporter.INDEX);
+
+        try {
+            SiteExporter.exportNow(page("Bye"), "body {}", "", options,
+                failingOn(SiteExporter.INDEX, SiteExporter.directory(dir)));
+            fail("The write error must reach the caller");
+        } catch (IOException expected) {
+            // Disk full
+        }
+        assertEquals(before, read(dir, SiteExporter.INDEX));
+        assertFalse(new File(dir, SiteExporter.INDEX + ".tmp").exists());
+        assertFalse(read(dir, SiteExporter.MANIFEST).contains(SiteExporter.INDEX));
+
+        // Even the old content is written again, since its hash is no longer recorded
+        SiteExporter.Result retry = SiteExporter.exportNow(hello, "body {}", "", options,
+            SiteExporter.directory(dir));
+        assertEquals(1, retry.written);
+        assertEquals(before, read(dir, SiteExporter.INDEX));
+    }
+
+    @Test
+    public void failedBundleIsDiscarded() throws Exception {
+        File dir = temp.newFolder("site");
+        SiteExporter.Options options = new SiteExporter.Options();
+        options.bundleName = "site.zip";
+        try {
+            SiteExporter.exportNow(page("Hello"), "body {}", "", options,
+                failingOn("site.zip", SiteExporter.directory(dir)));
+            fail("The write error must reach the caller");
+        } catch (IOException expected) {
+            // Disk full
+        }
+        assertFalse(new File(dir, "site.zip").exists());
+        assertFalse(new File(dir, "site.zip.tmp").exists());
+        assertEquals(1, SiteExporter.exportNow(page("Hello"), "body {}", "", options,
+            SiteExporter.directory(dir)).written);
+    }
+
+    private static List<BlocElement> page(String text) {
+        BlocElement section = new BlocElement("section");
+        section.addChild(new BlocElement("p", text));
+        return Collections.singletonList(section);
+    }
+
+    private static String read(File dir, String name) throws IOException {
+        return new String(Files.readAllBytes(new File(dir, name).toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Target whose output for one file fails on the first write, like a full disk
+     */
+    private static SiteExporter.Target failingOn(String failing, SiteExporter.Target target) {
+        return new SiteExporter.Target() {
+            @Override
+            public String describe() {
+                return target.describe();
+            }
+
+            @Override
+            public boolean exists(String name) throws IOException {
+                return target.exists(name);
+            }
+
+            @Override
+            public SiteExporter.Output create(String name) throws IOException {
+                SiteExporter.Output output = target.create(name);
+                if (!name.equals(failing)) return output;
+                return new SiteExporter.Output() {
+                    @Override
+                    public int write(ByteBuffer src) throws IOException {
+                        throw new IOException("Disk full");
+                    }
+
+                    @Override
+                    public boolean isOpen() {
+                        return output.isOpen();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        output.close();
+                    }
+
+                    @Override
+                    public void discard() {
+                        output.discard();
+                    }
+                };
+            }
+
+            @Override
+            public InputStream read(String name) throws IOException {
+                return target.read(name);
+            }
+        };
+    }
+}
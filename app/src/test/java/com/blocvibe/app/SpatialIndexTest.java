@@ -0,0 +1,91 @@
+package com.blocvibe.app;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.RectF;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+public class SpatialIndexTest {
+
+    @Test
+    public void pointQueriesMatchBruteForce() {
+        Random random = new Random(42);
+        for (int n : new int[] {0, 1, 15, 16, 17, 255, 257, 5000}) {
+            Map<String, RectF> boxes = randomBoxes(random, n);
+            SpatialIndex index = new SpatialIndex(boxes);
+            assertEquals(n, index.size());
+            for (int q = 0; q < 500; q++) {
+                float x = random.nextFloat() * 1100 - 50;
+                float y = random.nextFloat() * 1100 - 50;
+                assertEquals("n=" + n + " at " + x + "," + y, bruteForce(boxes, x, y), query(index, x, y));
+            }
+        }
+    }
+
+    @Test
+    public void edgesAreInclusive() {
+        Map<String, RectF> boxes = new HashMap<>();
+        boxes.put("a", box(10, 10, 20, 20));
+        SpatialIndex index = new SpatialIndex(boxes);
+        assertEquals(Collections.singletonList("a"), query(index, 10, 10));
+        assertEquals(Collections.singletonList("a"), query(index, 20, 20));
+        assertTrue(query(index, 20.5f, 15).isEmpty());
+    }
+
+    @Test
+    public void nestedBoxesAllMatch() {
+        Map<String, RectF> boxes = new HashMap<>();
+        for (int i = 0; i < 40; i++) {
+            boxes.put("n" + i, box(i, i, 200 - i, 200 - i));  // Each inside the previous
+        }
+        List<String> hits = query(new SpatialIndex(boxes), 100, 100);
+        assertEquals(40, hits.size());
+        assertEquals(Collections.singletonList("n0"), query(new SpatialIndex(boxes), 0.5f, 100));
+    }
+
+    private static List<String> query(SpatialIndex index, float x, float y) {
+        List<String> hits = new ArrayList<>();
+        index.queryPoint(x, y, hits);
+        Collections.sort(hits);
+        return hits;
+    }
+
+    private static List<String> bruteForce(Map<String, RectF> boxes, float x, float y) {
+        List<String> hits = new ArrayList<>();
+        for (Map.Entry<String, RectF> entry : boxes.entrySet()) {
+            RectF box = entry.getValue();
+            if (x >= box.left && x <= box.right && y >= box.top && y <= box.bottom) {
+                hits.add(entry.getKey());
+            }
+        }
+        Collections.sort(hits);
+        return hits;
+    }
+
+    private static Map<String, RectF> randomBoxes(Random random, int n) {
+        Map<String, RectF> boxes = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            float left = random.nextFloat() * 1000;
+            float top = random.nextFloat() * 1000;
+            boxes.put("e" + i, box(left, top, left + random.nextFloat() * 150, top + random.nextFloat() * 80));
+        }
+        return boxes;
+    }
+
+    // Fields are set directly: the android.jar stub's constructors do nothing in unit tests
+    private static RectF box(float left, float top, float right, float bottom) {
+        RectF box = new RectF();
+        box.left = left;
+        box.top = top;
+        box.right = right;
+        box.bottom = bottom;
+        return box;
+    }
+}
@@ -0,0 +1,71 @@
+package com.blocvibe.app;
+
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * TestTrees - Walking and describing BlocElement trees in tests
+ */
+final class TestTrees {
+
+    private TestTrees() {
+    }
+
+    /**
+     * Add every element, depth first, parents before children
+     */
+    static void collect(List<BlocElement> elements, List<BlocElement> into) {
+        for (BlocElement el : elements) {
+            into.add(el);
+            collect(el.children, into);
+        }
+    }
+
+    /**
+     * The list holding target (roots or some element's children), or null
+     */
+    static List<BlocElement> siblings(List<BlocElement> roots, BlocElement target) {
+        if (roots.contains(target)) return roots;
+        for (BlocElement el : roots) {
+            List<BlocElement> found = siblings(el.children, target);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    /**
+     * IDs and nesting only: id(children)
+     */
+    static String describeIds(List<BlocElement> elements) {
+        return describe(elements, false, false);
+    }
+
+    /**
+     * What the canvas shows: id<tag>"text"(children)
+     */
+    static String describe(List<BlocElement> elements) {
+        return describe(elements, true, false);
+    }
+
+    /**
+     * describe plus sorted styles and attributes: id<tag>"text"{styles}{attributes}(children)
+     */
+    static String describeWithProps(List<BlocElement> elements) {
+        return describe(elements, true, true);
+    }
+
+    private static String describe(List<BlocElement> elements, boolean content, boolean props) {
+        StringBuilder out = new StringBuilder();
+        for (BlocElement el : elements) {
+            out.append(el.elementId);
+            if (content) {
+                out.append('<').append(el.tag).append(">\"").append(el.textContent).append('"');
+            }
+            if (props) {
+                out.append(new TreeMap<>(el.styles)).append(new TreeMap<>(el.attributes));
+            }
+            out.append('(').append(describe(el.children, content, props)).append(')');
+        }
+        return out.toString();
+    }
+}